@@ -0,0 +1,264 @@
+package com.tsauthentication;
+
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Rolling latency and success statistics per authenticator on this device, together with the
+ * authenticators each (hashed) username has registered. Persisted to a small binary file so the
+ * recommendation survives app restarts.
+ *
+ * Success rates and latencies are moving averages, so an authenticator that failed a few times
+ * early on recovers once it works again, and nothing grows with the number of attempts.
+ *
+ * The file is read and written on a background thread only, so recording from the SDK callback
+ * thread never touches the disk. Samples recorded before the file has been read are merged with
+ * it; until then, recommendations are based on this session alone.
+ */
+class AuthenticatorStats {
+
+  static final int AUTHENTICATOR_WEBAUTHN = 0;
+  static final int AUTHENTICATOR_NATIVE_BIOMETRICS = 1;
+  static final int AUTHENTICATOR_PIN_CODE = 2;
+
+  private static final String[] AUTHENTICATOR_NAMES = {"webauthn", "nativeBiometrics", "pinCode"};
+  private static final int AUTHENTICATOR_COUNT = AUTHENTICATOR_NAMES.length;
+
+  private static final String TAG = "TSAuthentication";
+  static final String FILE_NAME = "ts_authenticator_stats.bin";
+  private static final int FILE_VERSION = 3;
+
+  // Weight of the newest sample in the latency moving average.
+  private static final double LATENCY_ALPHA = 0.2;
+  // Weight of the newest attempt in the success rate moving average, which then reflects about
+  // the last ten attempts. Until that many attempts are known, all of them weigh the same.
+  private static final double SUCCESS_ALPHA = 0.1;
+  private static final int MAX_SAMPLES = 10;
+  // Attempts needed before an authenticator is judged on its success rate.
+  private static final int MIN_SAMPLES = 5;
+  private static final double MIN_SUCCESS_RATE = 0.8;
+  private static final int MAX_USERS = 64;
+
+  @Nullable private final File file;
+  private final UsernameHasher usernameHasher;
+  private final ExecutorService writer = Executors.newSingleThreadExecutor();
+
+  // Attempts recorded so far, capped at MAX_SAMPLES.
+  private final int[] samples = new int[AUTHENTICATOR_COUNT];
+  private final double[] successRate = new double[AUTHENTICATOR_COUNT];
+  // NaN until the first successful attempt.
+  private final double[] latencyMs = new double[AUTHENTICATOR_COUNT];
+  // Salted username hash -> bitmask of registered authenticators, least recently used first.
+  private final LinkedHashMap<Long, Integer> registrations = new LinkedHashMap<>(16, 0.75f, true);
+
+  /**
+   * @param directory where the statistics are persisted, or null to keep them in memory only.
+   */
+  AuthenticatorStats(@Nullable File directory, UsernameHasher usernameHasher) {
+    this.file = directory == null ? null : new File(directory, FILE_NAME);
+    this.usernameHasher = usernameHasher;
+    Arrays.fill(latencyMs, Double.NaN);
+    if (file != null) {
+      writer.execute(this::load);
+    }
+  }
+
+  synchronized void recordRegistration(int authenticator, @Nullable String username) {
+    markRegistered(authenticator, username);
+    scheduleSave();
+  }
+
+  /**
+   * Records a completed authentication attempt. A successful attempt also proves the
+   * authenticator is registered for the user. Leave out attempts the user canceled; they say
+   * nothing about the authenticator.
+   */
+  synchronized void recordAttempt(int authenticator, @Nullable String username, long elapsedMs, boolean success) {
+    if (samples[authenticator] < MAX_SAMPLES) {
+      samples[authenticator]++;
+    }
+    double weight = Math.max(SUCCESS_ALPHA, 1.0 / samples[authenticator]);
+    successRate[authenticator] += weight * ((success ? 1 : 0) - successRate[authenticator]);
+
+    if (success) {
+      latencyMs[authenticator] = Double.isNaN(latencyMs[authenticator])
+        ? elapsedMs
+        : LATENCY_ALPHA * elapsedMs + (1 - LATENCY_ALPHA) * latencyMs[authenticator];
+      markRegistered(authenticator, username);
+    }
+    scheduleSave();
+  }
+
+  /**
+   * @return the name of the fastest reliable authenticator registered for the user, or null when
+   * nothing is known to be registered for them.
+   */
+  @Nullable
+  synchronized String recommend(@Nullable String username) {
+    Integer mask = registrations.get(usernameHasher.hash(username));
+    if (mask == null || mask == 0) {
+      return null;
+    }
+
+    int best = -1;
+    for (int authenticator = 0; authenticator < AUTHENTICATOR_COUNT; authenticator++) {
+      if ((mask & (1 << authenticator)) != 0 && (best < 0 || isBetter(authenticator, best))) {
+        best = authenticator;
+      }
+    }
+    return AUTHENTICATOR_NAMES[best];
+  }
+
+  // Reliable authenticators with a latency history come first, fastest first. Authenticators
+  // without enough samples come next, and unreliable ones last, most successful first.
+  private boolean isBetter(int candidate, int current) {
+    int candidateRank = rank(candidate);
+    int currentRank = rank(current);
+    if (candidateRank != currentRank) {
+      return candidateRank < currentRank;
+    }
+    if (candidateRank == 0) {
+      return latencyMs[candidate] < latencyMs[current];
+    }
+    if (candidateRank == 2) {
+      return successRate[candidate] > successRate[current];
+    }
+    return false;
+  }
+
+  private int rank(int authenticator) {
+    if (samples[authenticator] < MIN_SAMPLES) {
+      return 1;
+    }
+    return successRate[authenticator] >= MIN_SUCCESS_RATE ? 0 : 2;
+  }
+
+  private void markRegistered(int authenticator, @Nullable String username) {
+    if (username == null) {
+      return;
+    }
+    long hash = usernameHasher.hash(username);
+    Integer mask = registrations.get(hash);
+    registrations.put(hash, (mask == null ? 0 : mask) | (1 << authenticator));
+    trimRegistrations();
+  }
+
+  private void trimRegistrations() {
+    Iterator<Long> eldest = registrations.keySet().iterator();
+    while (registrations.size() > MAX_USERS && eldest.hasNext()) {
+      eldest.next();
+      eldest.remove();
+    }
+  }
+
+  // region Persistence
+
+  // Runs first on the writer thread, before any save.
+  private void load() {
+    if (!file.exists()) {
+      return;
+    }
+
+    int[] storedSamples = new int[AUTHENTICATOR_COUNT];
+    double[] storedSuccessRate = new double[AUTHENTICATOR_COUNT];
+    double[] storedLatencyMs = new double[AUTHENTICATOR_COUNT];
+    LinkedHashMap<Long, Integer> storedRegistrations = new LinkedHashMap<>();
+    try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+      if (in.readInt() != FILE_VERSION) {
+        return;
+      }
+      for (int i = 0; i < AUTHENTICATOR_COUNT; i++) {
+        storedSamples[i] = in.readInt();
+        storedSuccessRate[i] = in.readFloat();
+        storedLatencyMs[i] = in.readFloat();
+      }
+      int userCount = in.readInt();
+      for (int i = 0; i < userCount; i++) {
+        storedRegistrations.put(in.readLong(), (int) in.readByte());
+      }
+    } catch (IOException e) {
+      Log.w(TAG, "Failed to load authenticator stats", e);
+      return;
+    }
+
+    synchronized (this) {
+      // Averages from this session are newer than the stored ones and take precedence.
+      for (int i = 0; i < AUTHENTICATOR_COUNT; i++) {
+        if (samples[i] == 0) {
+          successRate[i] = storedSuccessRate[i];
+        }
+        if (Double.isNaN(latencyMs[i])) {
+          latencyMs[i] = storedLatencyMs[i];
+        }
+        samples[i] = Math.min(MAX_SAMPLES, samples[i] + storedSamples[i]);
+      }
+      // Stored users go in as the least recently used, behind the ones seen in this session.
+      LinkedHashMap<Long, Integer> recent = new LinkedHashMap<>(registrations);
+      registrations.clear();
+      registrations.putAll(storedRegistrations);
+      for (Map.Entry<Long, Integer> entry : recent.entrySet()) {
+        Integer stored = registrations.get(entry.getKey());
+        registrations.put(entry.getKey(), (stored == null ? 0 : stored) | entry.getValue());
+      }
+      trimRegistrations();
+    }
+  }
+
+  private void scheduleSave() {
+    if (file == null) {
+      return;
+    }
+    writer.execute(() -> {
+      final byte[] snapshot;
+      synchronized (this) {
+        snapshot = serialize();
+      }
+      File temp = new File(file.getPath() + ".tmp");
+      try (FileOutputStream out = new FileOutputStream(temp)) {
+        out.write(snapshot);
+      } catch (IOException e) {
+        Log.w(TAG, "Failed to save authenticator stats", e);
+        return;
+      }
+      if (!temp.renameTo(file)) {
+        Log.w(TAG, "Failed to replace authenticator stats file");
+      }
+    });
+  }
+
+  private byte[] serialize() {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(
+      8 + AUTHENTICATOR_COUNT * 12 + registrations.size() * 9);
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      out.writeInt(FILE_VERSION);
+      for (int i = 0; i < AUTHENTICATOR_COUNT; i++) {
+        out.writeInt(samples[i]);
+        out.writeFloat((float) successRate[i]);
+        out.writeFloat((float) latencyMs[i]);
+      }
+      out.writeInt(registrations.size());
+      for (Map.Entry<Long, Integer> entry : registrations.entrySet()) {
+        out.writeLong(entry.getKey());
+        out.writeByte(entry.getValue());
+      }
+    } catch (IOException e) {
+      // Writing to memory does not fail.
+    }
+    return bytes.toByteArray();
+  }
+}
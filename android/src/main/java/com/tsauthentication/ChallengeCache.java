@@ -0,0 +1,101 @@
+package com.tsauthentication;
+
+import android.os.SystemClock;
+
+import androidx.annotation.Nullable;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded, expiring LRU of the challenges recently signed per username. Entries hold the future
+ * of the signing operation, so a repeat that arrives while the first one is still prompting the
+ * user is caught as well.
+ */
+class ChallengeCache {
+
+  static final long DEFAULT_TTL_MS = 5 * 60 * 1000;
+  static final int DEFAULT_MAX_ENTRIES = 64;
+
+  private TsAuthenticationEngine.ChallengeReplayPolicy policy = TsAuthenticationEngine.ChallengeReplayPolicy.OFF;
+  private long ttlMs = DEFAULT_TTL_MS;
+  private int maxEntries = DEFAULT_MAX_ENTRIES;
+
+  private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+      return size() > maxEntries;
+    }
+  };
+
+  synchronized void configure(TsAuthenticationEngine.ChallengeReplayPolicy policy, long ttlMs, int maxEntries) {
+    this.policy = policy;
+    this.ttlMs = ttlMs;
+    this.maxEntries = maxEntries;
+    entries.clear();
+  }
+
+  synchronized TsAuthenticationEngine.ChallengeReplayPolicy getPolicy() {
+    return policy;
+  }
+
+  /**
+   * Remembers the signing operation for the challenge unless the same challenge was already
+   * signed for the user by the same kind of operation.
+   *
+   * @return the future of the earlier operation when this is a repeat, otherwise null.
+   */
+  @Nullable
+  synchronized TsAuthenticationFuture<Map<String, Object>> putIfAbsent(
+    int kind,
+    @Nullable String username,
+    @Nullable String challenge,
+    TsAuthenticationFuture<Map<String, Object>> future) {
+    if (policy == TsAuthenticationEngine.ChallengeReplayPolicy.OFF || challenge == null) {
+      return null;
+    }
+
+    String key = key(kind, username, challenge);
+    long now = SystemClock.elapsedRealtime();
+    Entry existing = entries.get(key);
+    if (existing != null && existing.expiresAt > now) {
+      return existing.future;
+    }
+
+    entries.put(key, new Entry(future, now + ttlMs));
+    return null;
+  }
+
+  /**
+   * Forgets a challenge whose signing operation failed, so it can be retried.
+   */
+  synchronized void remove(
+    int kind,
+    @Nullable String username,
+    @Nullable String challenge,
+    TsAuthenticationFuture<Map<String, Object>> future) {
+    if (challenge == null) {
+      return;
+    }
+
+    String key = key(kind, username, challenge);
+    Entry existing = entries.get(key);
+    if (existing != null && existing.future == future) {
+      entries.remove(key);
+    }
+  }
+
+  private static String key(int kind, @Nullable String username, String challenge) {
+    return kind + "\n" + username + "\n" + challenge;
+  }
+
+  private static final class Entry {
+    final TsAuthenticationFuture<Map<String, Object>> future;
+    final long expiresAt;
+
+    Entry(TsAuthenticationFuture<Map<String, Object>> future, long expiresAt) {
+      this.future = future;
+      this.expiresAt = expiresAt;
+    }
+  }
+}
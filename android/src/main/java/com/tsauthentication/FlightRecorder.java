@@ -0,0 +1,251 @@
+package com.tsauthentication;
+
+import androidx.annotation.Nullable;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size, lock-free ring buffer of the most recent module operations.
+ *
+ * Every slot is pre-allocated as a column in a set of atomic arrays, so recording an operation
+ * allocates nothing beyond hashing its username. Writers take a sequence number with a single atomic increment, claim its slot
+ * by swapping the per-slot stamp to a "being written" marker and publish it by swapping the stamp
+ * back; readers use the stamp to skip slots that are being rewritten while they copy. The fields
+ * are atomic arrays so that their writes and reads stay ordered with the stamp accesses.
+ *
+ * A writer that finds its slot still held by another writer drops its record instead of waiting.
+ */
+class FlightRecorder {
+
+  // region Methods
+
+  static final int METHOD_INITIALIZE = 0;
+  static final int METHOD_REGISTER_WEBAUTHN = 1;
+  static final int METHOD_AUTHENTICATE_WEBAUTHN = 2;
+  static final int METHOD_SIGN_TRANSACTION_WEBAUTHN = 3;
+  static final int METHOD_REGISTER_NATIVE_BIOMETRICS = 4;
+  static final int METHOD_AUTHENTICATE_NATIVE_BIOMETRICS = 5;
+  static final int METHOD_APPROVAL_WEBAUTHN = 6;
+  static final int METHOD_APPROVAL_WEBAUTHN_WITH_DATA = 7;
+  static final int METHOD_APPROVAL_NATIVE_BIOMETRICS = 8;
+  static final int METHOD_REGISTER_PIN_CODE = 9;
+  static final int METHOD_COMMIT_PIN_REGISTRATION = 10;
+  static final int METHOD_AUTHENTICATE_PIN_CODE = 11;
+  static final int METHOD_GET_DEVICE_INFO = 12;
+  static final int METHOD_REGISTER_PIN_CODE_AND_COMMIT = 13;
+
+  private static final String[] METHOD_NAMES = {
+    "initialize",
+    "registerWebAuthn",
+    "authenticateWebAuthn",
+    "signTransactionWebAuthn",
+    "registerNativeBiometrics",
+    "authenticateNativeBiometrics",
+    "approvalWebAuthn",
+    "approvalWebAuthnWithData",
+    "approvalNativeBiometrics",
+    "registerPinCode",
+    "commitPinRegistration",
+    "authenticatePinCode",
+    "getDeviceInfo",
+    "registerPinCodeAndCommit"
+  };
+
+  // region Outcomes
+
+  static final int OUTCOME_PENDING = 0;
+  static final int OUTCOME_SUCCESS = 1;
+  static final int OUTCOME_FAILURE = 2;
+
+  private static final String[] OUTCOME_NAMES = {"pending", "success", "failure"};
+
+  // region Error categories
+
+  static final int ERROR_NONE = 0;
+  static final int ERROR_SDK = 1;
+  static final int ERROR_INVALID_INPUT = 2;
+  static final int ERROR_UNSUPPORTED = 3;
+  static final int ERROR_NO_ACTIVITY = 4;
+  static final int ERROR_CONTEXT_NOT_FOUND = 5;
+  static final int ERROR_REPLAYED_CHALLENGE = 6;
+  static final int ERROR_UNSUPPORTED_ACTIVITY = 7;
+  static final int ERROR_USER_CANCELED = 8;
+  static final int ERROR_NETWORK = 9;
+  static final int ERROR_SERVER = 10;
+  static final int ERROR_NOT_INITIALIZED = 11;
+  static final int ERROR_USER_NOT_FOUND = 12;
+
+  private static final String[] ERROR_NAMES = {
+    "none", "sdk", "invalidInput", "unsupported", "noActivity", "contextNotFound", "replayedChallenge",
+    "unsupportedActivity", "userCanceled", "network", "server", "notInitialized", "userNotFound"
+  };
+
+  static final int DEFAULT_CAPACITY = 256;
+
+  private final UsernameHasher usernameHasher;
+  private final int capacity;
+  private final int mask;
+  private final AtomicLong cursor = new AtomicLong();
+
+  // Stamp of each slot: 0 while empty, negative while being written, otherwise (sequence + 1) << 1,
+  // with the low bit set once the operation has ended. The low bit keeps a reader from taking a
+  // slot rewritten by end() for unchanged.
+  private final AtomicLongArray stamps;
+  private final AtomicIntegerArray methods;
+  private final AtomicLongArray usernameHashes;
+  private final AtomicLongArray startTimes;
+  private final AtomicLongArray endTimes;
+  private final AtomicIntegerArray outcomes;
+  private final AtomicIntegerArray errorCategories;
+
+  FlightRecorder(UsernameHasher usernameHasher) {
+    this(DEFAULT_CAPACITY, usernameHasher);
+  }
+
+  /**
+   * @param capacity number of operations kept; rounded up to the next power of two.
+   */
+  FlightRecorder(int capacity, UsernameHasher usernameHasher) {
+    this.usernameHasher = usernameHasher;
+    int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+    this.capacity = size;
+    this.mask = size - 1;
+    this.stamps = new AtomicLongArray(size);
+    this.methods = new AtomicIntegerArray(size);
+    this.usernameHashes = new AtomicLongArray(size);
+    this.startTimes = new AtomicLongArray(size);
+    this.endTimes = new AtomicLongArray(size);
+    this.outcomes = new AtomicIntegerArray(size);
+    this.errorCategories = new AtomicIntegerArray(size);
+  }
+
+  /**
+   * Records the start of an operation.
+   *
+   * @return a token to pass to {@link #end(long, int, int)} once the operation settles.
+   */
+  long begin(int method, @Nullable String username) {
+    long sequence = cursor.getAndIncrement();
+    int slot = (int) (sequence & mask);
+    long published = stamp(sequence);
+
+    long current = stamps.get(slot);
+    if (current < 0 || current >= published || !stamps.compareAndSet(slot, current, -published)) {
+      // Another writer holds the slot; this operation goes unrecorded and end() ignores it.
+      return sequence;
+    }
+    methods.set(slot, method);
+    usernameHashes.set(slot, usernameHasher.hash(username));
+    startTimes.set(slot, System.currentTimeMillis());
+    endTimes.set(slot, 0);
+    outcomes.set(slot, OUTCOME_PENDING);
+    errorCategories.set(slot, ERROR_NONE);
+    stamps.compareAndSet(slot, -published, published);
+
+    return sequence;
+  }
+
+  /**
+   * Records how an operation started with {@link #begin(int, String)} settled. Does nothing when
+   * the operation has already ended or its slot has been reused by a newer operation.
+   */
+  void end(long token, int outcome, int errorCategory) {
+    int slot = (int) (token & mask);
+    long published = stamp(token);
+
+    if (!stamps.compareAndSet(slot, published, -published)) {
+      return;
+    }
+    endTimes.set(slot, System.currentTimeMillis());
+    outcomes.set(slot, outcome);
+    errorCategories.set(slot, errorCategory);
+    stamps.compareAndSet(slot, -published, published | 1);
+  }
+
+  /**
+   * Copies the recorded operations, oldest first. Slots that are being written while they are
+   * read are left out rather than reported half-updated.
+   */
+  Entry[] snapshot() {
+    long last = cursor.get();
+    long first = Math.max(0, last - capacity);
+    Entry[] buffer = new Entry[(int) (last - first)];
+    int count = 0;
+
+    for (long sequence = first; sequence < last; sequence++) {
+      int slot = (int) (sequence & mask);
+      long published = stamps.get(slot);
+      if ((published & ~1L) != stamp(sequence)) {
+        continue;
+      }
+
+      Entry entry = new Entry(
+        sequence,
+        METHOD_NAMES[methods.get(slot)],
+        usernameHashes.get(slot),
+        startTimes.get(slot),
+        endTimes.get(slot),
+        OUTCOME_NAMES[outcomes.get(slot)],
+        ERROR_NAMES[errorCategories.get(slot)]);
+
+      if (stamps.get(slot) == published) {
+        buffer[count++] = entry;
+      }
+    }
+
+    Entry[] entries = new Entry[count];
+    System.arraycopy(buffer, 0, entries, 0, count);
+    return entries;
+  }
+
+  private static long stamp(long sequence) {
+    return (sequence + 1) << 1;
+  }
+
+  /**
+   * Maps an SDK error to an error category by its type name, e.g. "userCanceled" or the simple
+   * class name of an SDK error subtype. Unrecognized errors fall back to {@link #ERROR_SDK}.
+   */
+  static int sdkErrorCategory(@Nullable String errorType) {
+    if (errorType == null) {
+      return ERROR_SDK;
+    }
+    String type = errorType.toLowerCase(Locale.ROOT).replaceAll("[^a-z]", "");
+    if (type.contains("cancel")) {
+      return ERROR_USER_CANCELED;
+    } else if (type.contains("network")) {
+      return ERROR_NETWORK;
+    } else if (type.contains("notinitialized")) {
+      return ERROR_NOT_INITIALIZED;
+    } else if (type.contains("usernotfound")) {
+      return ERROR_USER_NOT_FOUND;
+    } else if (type.contains("server")) {
+      return ERROR_SERVER;
+    }
+    return ERROR_SDK;
+  }
+
+  static final class Entry {
+    final long sequence;
+    final String method;
+    final long usernameHash;
+    final long startTime;
+    final long endTime;
+    final String outcome;
+    final String errorCategory;
+
+    Entry(long sequence, String method, long usernameHash, long startTime, long endTime,
+          String outcome, String errorCategory) {
+      this.sequence = sequence;
+      this.method = method;
+      this.usernameHash = usernameHash;
+      this.startTime = startTime;
+      this.endTime = endTime;
+      this.outcome = outcome;
+      this.errorCategory = errorCategory;
+    }
+  }
+}
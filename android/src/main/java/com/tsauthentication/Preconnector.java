@@ -0,0 +1,154 @@
+package com.tsauthentication;
+
+import android.os.SystemClock;
+
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+/**
+ * Warms the DNS cache and the TLS session cache for the configured base URL in the background, so
+ * the first SDK request does not pay for the full lookup and handshake on the critical path.
+ *
+ * The SDK keeps its own connection pool, so the warm-up cannot hand it an open socket. It relies
+ * on the process-wide DNS cache and on TLS session resumption through the default SSL context.
+ * The reported saving is the difference between the cold connection and a second, warm one.
+ *
+ * Whether the second handshake actually resumed the first session is checked by session ID and
+ * reported alongside. TLS 1.3 gives every connection a new session ID, so a TLS 1.3 connection
+ * is always reported as not resumed.
+ */
+class Preconnector {
+
+  private static final int DEFAULT_HTTPS_PORT = 443;
+  private static final int DEFAULT_TIMEOUT_MS = 10_000;
+
+  private final SSLSocketFactory socketFactory;
+  private final int timeoutMs;
+  private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+  Preconnector() {
+    this((SSLSocketFactory) SSLSocketFactory.getDefault(), DEFAULT_TIMEOUT_MS);
+  }
+
+  /**
+   * @param socketFactory factory whose session cache is warmed; the default one is shared with
+   *                      the platform HTTPS stack.
+   * @param timeoutMs limit for the TCP connect and for each read of the TLS handshake, so a
+   *                  stalled peer cannot hold up later preconnects.
+   */
+  Preconnector(SSLSocketFactory socketFactory, int timeoutMs) {
+    this.socketFactory = socketFactory;
+    this.timeoutMs = timeoutMs;
+  }
+
+  TsAuthenticationFuture<Map<String, Object>> preconnect(String baseUrl) {
+    TsAuthenticationFuture<Map<String, Object>> future = new TsAuthenticationFuture<>();
+
+    final URI uri;
+    try {
+      uri = new URI(baseUrl);
+    } catch (URISyntaxException e) {
+      future.fail(new TsAuthenticationException("Invalid base URL: " + baseUrl));
+      return future;
+    }
+    if (uri.getHost() == null || !"https".equalsIgnoreCase(uri.getScheme())) {
+      future.fail(new TsAuthenticationException("Invalid base URL: " + baseUrl));
+      return future;
+    }
+
+    final String host = uri.getHost();
+    final int port = uri.getPort() > 0 ? uri.getPort() : DEFAULT_HTTPS_PORT;
+
+    executor.execute(() -> {
+      try {
+        Timings cold = connect(host, port);
+        Timings warm = connect(host, port);
+
+        Map<String, Object> report = new HashMap<>();
+        report.put("host", host);
+        report.put("protocol", cold.protocol);
+        report.put("dnsMs", (double) cold.dnsMs);
+        report.put("tcpMs", (double) cold.tcpMs);
+        report.put("tlsMs", (double) cold.tlsMs);
+        report.put("coldMs", (double) cold.totalMs());
+        report.put("warmMs", (double) warm.totalMs());
+        report.put("savedMs", (double) Math.max(0, cold.totalMs() - warm.totalMs()));
+        report.put("resumed", cold.sessionId.length > 0 && Arrays.equals(cold.sessionId, warm.sessionId));
+        future.complete(report);
+      } catch (IOException e) {
+        future.fail(new TsAuthenticationException("Preconnect failed: " + e.getMessage()));
+      }
+    });
+    return future;
+  }
+
+  private Timings connect(String host, int port) throws IOException {
+    Timings timings = new Timings();
+
+    long start = SystemClock.elapsedRealtime();
+    InetAddress address = InetAddress.getByName(host);
+    long resolved = SystemClock.elapsedRealtime();
+    timings.dnsMs = resolved - start;
+
+    Socket socket = new Socket();
+    try {
+      socket.connect(new InetSocketAddress(address, port), timeoutMs);
+      long connected = SystemClock.elapsedRealtime();
+      timings.tcpMs = connected - resolved;
+
+      SSLSocket sslSocket = (SSLSocket) socketFactory.createSocket(socket, host, port, true);
+      try {
+        sslSocket.setSoTimeout(timeoutMs);
+        sslSocket.startHandshake();
+        timings.tlsMs = SystemClock.elapsedRealtime() - connected;
+
+        SSLSession session = sslSocket.getSession();
+        timings.protocol = session.getProtocol();
+        timings.sessionId = session.getId();
+      } finally {
+        closeQuietly(sslSocket);
+      }
+    } finally {
+      closeQuietly(socket);
+    }
+    return timings;
+  }
+
+  private static void closeQuietly(@Nullable Socket socket) {
+    if (socket == null) {
+      return;
+    }
+    try {
+      socket.close();
+    } catch (IOException e) {
+      // Nothing to do; the socket is discarded either way.
+    }
+  }
+
+  private static final class Timings {
+    long dnsMs;
+    long tcpMs;
+    long tlsMs;
+    String protocol;
+    byte[] sessionId;
+
+    long totalMs() {
+      return dnsMs + tcpMs + tlsMs;
+    }
+  }
+}
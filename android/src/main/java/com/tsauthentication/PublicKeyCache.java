@@ -0,0 +1,57 @@
+package com.tsauthentication;
+
+import androidx.annotation.Nullable;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU of public keys by key id. Holds the key material that registration and device-info
+ * results leave out when public keys are returned lazily.
+ */
+class PublicKeyCache {
+
+  static final int DEFAULT_MAX_ENTRIES = 16;
+
+  private boolean enabled = false;
+  private int maxEntries = DEFAULT_MAX_ENTRIES;
+
+  private final LinkedHashMap<String, String> entries = new LinkedHashMap<String, String>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+      return size() > maxEntries;
+    }
+  };
+
+  synchronized void configure(boolean enabled, int maxEntries) {
+    this.enabled = enabled;
+    this.maxEntries = maxEntries;
+    entries.clear();
+  }
+
+  /**
+   * Moves the "publicKey" of a result into the cache when lazy public keys are enabled.
+   *
+   * @return the result to deliver: the same map when disabled, otherwise a copy without the key.
+   */
+  synchronized Map<String, Object> detach(Map<String, Object> result) {
+    Object publicKeyId = result.get("publicKeyId");
+    Object publicKey = result.get("publicKey");
+    if (!enabled || !(publicKeyId instanceof String) || !(publicKey instanceof String)) {
+      return result;
+    }
+
+    entries.put((String) publicKeyId, (String) publicKey);
+    Map<String, Object> detached = new LinkedHashMap<>(result);
+    detached.remove("publicKey");
+    return detached;
+  }
+
+  /**
+   * @return the cached public key, or null when it was never cached or has been evicted.
+   */
+  @Nullable
+  synchronized String get(@Nullable String publicKeyId) {
+    return publicKeyId == null ? null : entries.get(publicKeyId);
+  }
+}
@@ -0,0 +1,326 @@
+package com.tsauthentication;
+
+import android.app.Activity;
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.appcompat.app.AppCompatActivity;
+
+import com.transmit.authentication.TSDeviceInfoError;
+import com.transmit.authentication.TSWebAuthnApprovalError;
+import com.transmit.authentication.TSWebAuthnApprovalResult;
+import com.transmit.authentication.TSWebAuthnAuthenticationError;
+import com.transmit.authentication.AuthenticationResult;
+import com.transmit.authentication.RegistrationResult;
+import com.transmit.authentication.TSAuthCallback;
+import com.transmit.authentication.TSAuthentication;
+import com.transmit.authentication.TSWebAuthnRegistrationError;
+import com.transmit.authentication.biometrics.BiometricPromptTexts;
+import com.transmit.authentication.biometrics.TSBiometricsAuthError;
+import com.transmit.authentication.biometrics.TSBiometricsAuthResult;
+import com.transmit.authentication.biometrics.TSBiometricsRegistrationError;
+import com.transmit.authentication.biometrics.TSBiometricsRegistrationResult;
+import com.transmit.authentication.biometrics.TSNativeBiometricsApprovalError;
+import com.transmit.authentication.biometrics.TSNativeBiometricsApprovalResult;
+import com.transmit.authentication.DeviceInfo;
+import com.transmit.authentication.network.startauth.TSWebAuthnAuthenticationData;
+import com.transmit.authentication.pincode.TSPinCodeAuthenticationError;
+import com.transmit.authentication.pincode.TSPinCodeAuthenticationResult;
+import com.transmit.authentication.pincode.TSPinCodeRegistrationContext;
+import com.transmit.authentication.pincode.TSPinCodeRegistrationError;
+import com.transmit.authentication.pincode.TSPinCodeRegistrationResult;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Gateway backed by the Transmit SDK. Converts SDK results to the maps returned to callers.
+ */
+class RealTsAuthenticationGateway implements TsAuthenticationGateway {
+
+  @Override
+  public void initializeSDK(Context context) {
+    TSAuthentication.initializeSDK(context);
+  }
+
+  @Override
+  public void initialize(Context context, String clientId) {
+    TSAuthentication.initialize(
+        context,
+        clientId
+    );
+  }
+
+  @Override
+  public boolean isWebAuthnSupported() {
+    return TSAuthentication.isWebAuthnSupported();
+  }
+
+  @Override
+  public void registerWebAuthn(Activity activity, String username, String displayName, Callback<Map<String, Object>> callback) {
+    TSAuthentication.registerWebAuthn(
+        activity,
+        username,
+        displayName,
+        new TSAuthCallback<RegistrationResult, TSWebAuthnRegistrationError>() {
+          @Override
+          public void success(RegistrationResult registrationResult) {
+            Map<String, Object> map = new HashMap<>();
+            map.put("result", registrationResult.result());
+            callback.success(map);
+          }
+
+          @Override
+          public void error(TSWebAuthnRegistrationError tsWebAuthnRegistrationError) {
+            callback.error(errorType(tsWebAuthnRegistrationError), tsWebAuthnRegistrationError.getErrorMessage());
+          }
+        });
+  }
+
+  @Override
+  public void authenticateWebAuthn(Activity activity, String username, Callback<Map<String, Object>> callback) {
+    TSAuthentication.authenticateWebAuthn(
+        activity,
+        username,
+        new TSAuthCallback<AuthenticationResult, TSWebAuthnAuthenticationError>() {
+          @Override
+          public void success(AuthenticationResult authenticationResult) {
+            Map<String, Object> map = new HashMap<>();
+            map.put("result", authenticationResult.result());
+            callback.success(map);
+          }
+
+          @Override
+          public void error(TSWebAuthnAuthenticationError tsWebAuthnAuthenticationError) {
+            callback.error(errorType(tsWebAuthnAuthenticationError), tsWebAuthnAuthenticationError.toString());
+          }
+        });
+  }
+
+  @Override
+  public void signTransactionWebAuthn(Activity activity, String username, Callback<Map<String, Object>> callback) {
+    TSAuthentication.signTransactionWebAuthn(
+        activity,
+        username,
+        new TSAuthCallback<AuthenticationResult, TSWebAuthnAuthenticationError>() {
+          @Override
+          public void success(AuthenticationResult authenticationResult) {
+            Map<String, Object> map = new HashMap<>();
+            map.put("result", authenticationResult.result());
+            callback.success(map);
+          }
+
+          @Override
+          public void error(TSWebAuthnAuthenticationError tsWebAuthnAuthenticationError) {
+            callback.error(errorType(tsWebAuthnAuthenticationError), tsWebAuthnAuthenticationError.toString());
+          }
+        });
+  }
+
+  @Override
+  public void registerNativeBiometrics(Activity activity, String username, Callback<Map<String, Object>> callback) {
+    TSAuthentication.registerNativeBiometrics(
+        activity,
+        username,
+        new TSAuthCallback<TSBiometricsRegistrationResult, TSBiometricsRegistrationError>() {
+          @Override
+          public void success(TSBiometricsRegistrationResult tsBiometricsRegistrationResult) {
+            Map<String, Object> map = new HashMap<>();
+            map.put("publicKeyId", tsBiometricsRegistrationResult.keyId());
+            map.put("publicKey", tsBiometricsRegistrationResult.publicKey());
+            map.put("os", "Android");
+            map.put("keyType", tsBiometricsRegistrationResult.keyType());
+            callback.success(map);
+          }
+
+          @Override
+          public void error(TSBiometricsRegistrationError tsBiometricsRegistrationError) {
+            callback.error(errorType(tsBiometricsRegistrationError), tsBiometricsRegistrationError.toString());
+          }
+        });
+  }
+
+  @Override
+  public void authenticateNativeBiometrics(
+    AppCompatActivity activity,
+    String username,
+    String challenge,
+    BiometricPromptTexts promptTexts,
+    Callback<Map<String, Object>> callback) {
+    TSAuthentication.authenticateNativeBiometrics(
+        activity,
+        username,
+        challenge,
+        promptTexts,
+        new TSAuthCallback<TSBiometricsAuthResult, TSBiometricsAuthError>() {
+          @Override
+          public void success(TSBiometricsAuthResult tsBiometricsAuthResult) {
+            Map<String, Object> map = new HashMap<>();
+            map.put("publicKeyId", tsBiometricsAuthResult.keyId());
+            map.put("signature", tsBiometricsAuthResult.signature());
+            callback.success(map);
+          }
+
+          @Override
+          public void error(TSBiometricsAuthError tsBiometricsAuthError) {
+            callback.error(errorType(tsBiometricsAuthError), tsBiometricsAuthError.toString());
+          }
+        });
+  }
+
+  @Override
+  public void approvalWebAuthn(
+    Activity activity,
+    String username,
+    Map<String, String> approvalData,
+    Callback<Map<String, Object>> callback) {
+    TSAuthentication.approvalWebAuthn(
+        activity,
+        username,
+        approvalData,
+        new ApprovalCallback(callback));
+  }
+
+  @Override
+  public void approvalWebAuthn(
+    Activity activity,
+    TSWebAuthnAuthenticationData authenticationData,
+    Callback<Map<String, Object>> callback) {
+    TSAuthentication.approvalWebAuthn(
+        activity,
+        authenticationData,
+        new ApprovalCallback(callback));
+  }
+
+  @Override
+  public void approvalNativeBiometrics(
+    AppCompatActivity activity,
+    String username,
+    String challenge,
+    BiometricPromptTexts promptTexts,
+    Callback<Map<String, Object>> callback) {
+    TSAuthentication.approvalNativeBiometrics(
+        activity,
+        username,
+        challenge,
+        promptTexts,
+        new TSAuthCallback<TSNativeBiometricsApprovalResult, TSNativeBiometricsApprovalError>() {
+          @Override
+          public void success(TSNativeBiometricsApprovalResult result) {
+            Map<String, Object> map = new HashMap<>();
+            map.put("publicKeyId", result.keyId());
+            map.put("signature", result.signature());
+            callback.success(map);
+          }
+
+          @Override
+          public void error(TSNativeBiometricsApprovalError error) {
+            callback.error(errorType(error), error.toString());
+          }
+        });
+  }
+
+  @Override
+  public void registerPinCode(String username, String pinCode, Callback<PinRegistration> callback) {
+    TSAuthentication.registerPinCode(
+      username,
+      pinCode,
+      new TSAuthCallback<TSPinCodeRegistrationResult, TSPinCodeRegistrationError>() {
+          @Override
+          public void success(TSPinCodeRegistrationResult result) {
+            TSPinCodeRegistrationContext registrationContext = result.registrationContext();
+
+            Map<String, Object> map = new HashMap<>();
+            map.put("publicKeyId", result.keyId());
+            map.put("publicKey", result.publicKey());
+            map.put("keyType", result.keyType());
+
+            callback.success(new PinRegistration() {
+              @NonNull
+              @Override
+              public Map<String, Object> result() {
+                return map;
+              }
+
+              @Override
+              public void commit() {
+                registrationContext.commit();
+              }
+            });
+          }
+
+          @Override
+          public void error(TSPinCodeRegistrationError error) {
+            callback.error(errorType(error), error.toString());
+          }
+        });
+  }
+
+  @Override
+  public void authenticatePinCode(String username, String pinCode, String challenge, Callback<Map<String, Object>> callback) {
+    TSAuthentication.authenticatePinCode(username, pinCode, challenge, new TSAuthCallback<TSPinCodeAuthenticationResult, TSPinCodeAuthenticationError>() {
+      @Override
+      public void success(TSPinCodeAuthenticationResult result) {
+        Map<String, Object> map = new HashMap<>();
+        map.put("publicKeyId", result.keyId());
+        map.put("signature", result.signature());
+        map.put("challenge", result.challenge());
+
+        callback.success(map);
+      }
+
+      @Override
+      public void error(TSPinCodeAuthenticationError error) {
+        callback.error(errorType(error), error.toString());
+      }
+    });
+  }
+
+  @Override
+  public void getDeviceInfo(Activity activity, Callback<Map<String, Object>> callback) {
+    TSAuthentication.getDeviceInfo(
+        activity,
+        new TSAuthCallback<DeviceInfo, TSDeviceInfoError>() {
+          @Override
+          public void success(DeviceInfo deviceInfo) {
+            Map<String, Object> map = new HashMap<>();
+            map.put("publicKeyId", deviceInfo.getPublicKeyId());
+            map.put("publicKey", deviceInfo.getPublicKey());
+            callback.success(map);
+          }
+
+          @Override
+          public void error(TSDeviceInfoError tsDeviceInfoError) {
+            callback.error(errorType(tsDeviceInfoError), tsDeviceInfoError.toString());
+          }
+        });
+  }
+
+  /**
+   * SDK errors are identified by their subtype or constant name rather than by a code.
+   */
+  private static String errorType(Object error) {
+    return error.getClass().getSimpleName() + " " + error;
+  }
+
+  private static class ApprovalCallback implements TSAuthCallback<TSWebAuthnApprovalResult, TSWebAuthnApprovalError> {
+
+    private final Callback<Map<String, Object>> callback;
+
+    ApprovalCallback(Callback<Map<String, Object>> callback) {
+      this.callback = callback;
+    }
+
+    @Override
+    public void success(TSWebAuthnApprovalResult result) {
+      Map<String, Object> map = new HashMap<>();
+      map.put("result", result.result());
+      callback.success(map);
+    }
+
+    @Override
+    public void error(TSWebAuthnApprovalError error) {
+      callback.error(errorType(error), error.toString());
+    }
+  }
+}
@@ -0,0 +1,292 @@
+package com.tsauthentication;
+
+import android.app.Activity;
+import android.content.Context;
+import android.util.Base64;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.appcompat.app.AppCompatActivity;
+
+import com.transmit.authentication.biometrics.BiometricPromptTexts;
+import com.transmit.authentication.network.startauth.TSWebAuthnAuthenticationData;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Gateway that answers without the SDK, keystore or backend, for load tests and CI. Every call
+ * completes on a scheduler thread after a latency drawn from the configured distribution, and
+ * fails with the configured probability per error type.
+ *
+ * Each call draws from its own random generator, seeded from the configured seed and the call's
+ * sequence number, so a run with the same seed and call order gives the same latencies, errors
+ * and results. Sequence numbers are taken in arrival order, so concurrent callers only get
+ * reproducible results as a whole, not per caller.
+ */
+class SimulatedTsAuthenticationGateway implements TsAuthenticationGateway {
+
+  private static final int SCHEDULER_THREADS = 4;
+
+  private final long seed;
+  private final TsAuthenticationEngine.LatencyDistribution distribution;
+  private final long minLatencyMs;
+  private final long meanLatencyMs;
+  private final long maxLatencyMs;
+  private final LinkedHashMap<String, Double> errorRates;
+
+  private final AtomicLong sequence = new AtomicLong();
+  private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(SCHEDULER_THREADS);
+
+  /**
+   * @param errorRates probability of failing with each error type, e.g. "networkError" to 0.05.
+   *                   The rates are checked in iteration order and should add up to at most 1.
+   */
+  SimulatedTsAuthenticationGateway(
+    long seed,
+    TsAuthenticationEngine.LatencyDistribution distribution,
+    long minLatencyMs,
+    long meanLatencyMs,
+    long maxLatencyMs,
+    Map<String, Double> errorRates) {
+    this.seed = seed;
+    this.distribution = distribution;
+    this.minLatencyMs = minLatencyMs;
+    this.meanLatencyMs = meanLatencyMs;
+    this.maxLatencyMs = maxLatencyMs;
+    this.errorRates = new LinkedHashMap<>(errorRates);
+  }
+
+  void shutdown() {
+    scheduler.shutdown();
+  }
+
+  @Override
+  public void initializeSDK(Context context) {
+  }
+
+  @Override
+  public void initialize(Context context, String clientId) {
+  }
+
+  @Override
+  public boolean isWebAuthnSupported() {
+    return true;
+  }
+
+  @Override
+  public void registerWebAuthn(Activity activity, String username, String displayName, Callback<Map<String, Object>> callback) {
+    simulate(callback, random -> result("registration", random));
+  }
+
+  @Override
+  public void authenticateWebAuthn(Activity activity, String username, Callback<Map<String, Object>> callback) {
+    simulate(callback, random -> result("authentication", random));
+  }
+
+  @Override
+  public void signTransactionWebAuthn(Activity activity, String username, Callback<Map<String, Object>> callback) {
+    simulate(callback, random -> result("transaction", random));
+  }
+
+  @Override
+  public void registerNativeBiometrics(Activity activity, String username, Callback<Map<String, Object>> callback) {
+    simulate(callback, random -> {
+      Map<String, Object> map = new HashMap<>();
+      map.put("publicKeyId", keyId("biometrics", username));
+      map.put("publicKey", randomString(random, 65));
+      map.put("os", "Android");
+      map.put("keyType", "ecdsa");
+      return map;
+    });
+  }
+
+  @Override
+  public void authenticateNativeBiometrics(
+    AppCompatActivity activity,
+    String username,
+    String challenge,
+    BiometricPromptTexts promptTexts,
+    Callback<Map<String, Object>> callback) {
+    simulate(callback, random -> signature(keyId("biometrics", username), challenge));
+  }
+
+  @Override
+  public void approvalWebAuthn(
+    Activity activity,
+    String username,
+    Map<String, String> approvalData,
+    Callback<Map<String, Object>> callback) {
+    simulate(callback, random -> result("approval", random));
+  }
+
+  @Override
+  public void approvalWebAuthn(
+    Activity activity,
+    TSWebAuthnAuthenticationData authenticationData,
+    Callback<Map<String, Object>> callback) {
+    simulate(callback, random -> result("approval", random));
+  }
+
+  @Override
+  public void approvalNativeBiometrics(
+    AppCompatActivity activity,
+    String username,
+    String challenge,
+    BiometricPromptTexts promptTexts,
+    Callback<Map<String, Object>> callback) {
+    simulate(callback, random -> signature(keyId("biometrics", username), challenge));
+  }
+
+  @Override
+  public void registerPinCode(String username, String pinCode, Callback<PinRegistration> callback) {
+    simulate(callback, random -> {
+      Map<String, Object> map = new HashMap<>();
+      map.put("publicKeyId", keyId("pin", username));
+      map.put("publicKey", randomString(random, 65));
+      map.put("keyType", "ecdsa");
+
+      return new PinRegistration() {
+        @NonNull
+        @Override
+        public Map<String, Object> result() {
+          return map;
+        }
+
+        @Override
+        public void commit() {
+        }
+      };
+    });
+  }
+
+  @Override
+  public void authenticatePinCode(String username, String pinCode, String challenge, Callback<Map<String, Object>> callback) {
+    simulate(callback, random -> {
+      Map<String, Object> map = signature(keyId("pin", username), challenge);
+      map.put("challenge", challenge);
+      return map;
+    });
+  }
+
+  @Override
+  public void getDeviceInfo(Activity activity, Callback<Map<String, Object>> callback) {
+    simulate(callback, random -> {
+      Map<String, Object> map = new HashMap<>();
+      map.put("publicKeyId", keyId("device", ""));
+      map.put("publicKey", randomString(random, 65));
+      return map;
+    });
+  }
+
+  // region Simulation
+
+  private interface ResultFactory<T> {
+    T create(Random random);
+  }
+
+  /**
+   * Latency and error drawn for one call, with the generator its result is built from.
+   */
+  static final class Draw {
+    final long latencyMs;
+    @Nullable final String errorType;
+    final Random random;
+
+    Draw(long latencyMs, @Nullable String errorType, Random random) {
+      this.latencyMs = latencyMs;
+      this.errorType = errorType;
+      this.random = random;
+    }
+  }
+
+  Draw draw(long sequence) {
+    Random random = new Random(seed ^ (sequence * 0x9E3779B97F4A7C15L));
+    long latencyMs = drawLatency(random);
+    String errorType = drawError(random);
+    return new Draw(latencyMs, errorType, random);
+  }
+
+  private <T> void simulate(Callback<T> callback, ResultFactory<T> factory) {
+    Draw draw = draw(sequence.getAndIncrement());
+    T result = draw.errorType == null ? factory.create(draw.random) : null;
+
+    scheduler.schedule(() -> {
+      if (draw.errorType != null) {
+        callback.error(draw.errorType, "Simulated " + draw.errorType);
+      } else {
+        callback.success(result);
+      }
+    }, draw.latencyMs, TimeUnit.MILLISECONDS);
+  }
+
+  private long drawLatency(Random random) {
+    double latency;
+    switch (distribution) {
+      case UNIFORM:
+        latency = minLatencyMs + random.nextDouble() * (maxLatencyMs - minLatencyMs);
+        break;
+      case EXPONENTIAL:
+        latency = minLatencyMs - Math.log(1 - random.nextDouble()) * (meanLatencyMs - minLatencyMs);
+        break;
+      case FIXED:
+      default:
+        latency = meanLatencyMs;
+        break;
+    }
+    return (long) Math.max(minLatencyMs, Math.min(maxLatencyMs, latency));
+  }
+
+  private String drawError(Random random) {
+    double draw = random.nextDouble();
+    double cumulative = 0;
+    for (Map.Entry<String, Double> entry : errorRates.entrySet()) {
+      cumulative += entry.getValue();
+      if (draw < cumulative) {
+        return entry.getKey();
+      }
+    }
+    return null;
+  }
+
+  private static Map<String, Object> result(String operation, Random random) {
+    Map<String, Object> map = new HashMap<>();
+    map.put("result", "simulated-" + operation + "-" + Long.toHexString(random.nextLong()));
+    return map;
+  }
+
+  private static Map<String, Object> signature(String keyId, String challenge) {
+    Map<String, Object> map = new HashMap<>();
+    map.put("publicKeyId", keyId);
+    map.put("signature", digest(keyId + ":" + challenge));
+    return map;
+  }
+
+  private static String keyId(String authenticator, String username) {
+    return "simulated-" + authenticator + "-" + Integer.toHexString(username.hashCode());
+  }
+
+  private static String randomString(Random random, int length) {
+    byte[] bytes = new byte[length];
+    random.nextBytes(bytes);
+    return Base64.encodeToString(bytes, Base64.NO_WRAP);
+  }
+
+  private static String digest(String value) {
+    try {
+      byte[] hash = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+      return Base64.encodeToString(hash, Base64.NO_WRAP);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
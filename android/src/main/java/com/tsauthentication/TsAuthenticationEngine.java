@@ -0,0 +1,1001 @@
+package com.tsauthentication;
+
+import android.app.Activity;
+import android.content.Context;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.appcompat.app.AppCompatActivity;
+
+import com.transmit.authentication.biometrics.BiometricPromptTexts;
+import com.transmit.authentication.network.startauth.TSAllowCredentials;
+import com.transmit.authentication.network.startauth.TSCredentialRequestOptions;
+import com.transmit.authentication.network.startauth.TSWebAuthnAuthenticationData;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Bridge-independent authentication pipeline. Holds the PIN registration context store, the
+ * flight recorder and the authenticator statistics, and reaches the SDK through a
+ * {@link TsAuthenticationGateway} that can be swapped for a simulated one.
+ *
+ * {@link TsAuthenticationModule} is a thin adapter over the shared instance; native screens can
+ * call it directly, without a running React instance:
+ *
+ * <pre>
+ * TsAuthenticationEngine.getInstance(this)
+ *   .authenticateNativeBiometrics(this, username, challenge)
+ *   .addListener(listener);
+ * </pre>
+ *
+ * Results are plain Java maps with the same keys as the JS API.
+ */
+public class TsAuthenticationEngine {
+
+  /**
+   * Receives the outcome of an engine operation. Called on the thread that settles the operation,
+   * usually the SDK callback thread, or on the thread calling
+   * {@link TsAuthenticationFuture#addListener} when the operation has already settled, e.g. when it
+   * fails its input checks. Post to your own handler when the thread matters.
+   */
+  public interface Listener<T> {
+    void onSuccess(@Nullable T result);
+
+    void onError(@NonNull TsAuthenticationException error);
+  }
+
+  /**
+   * Decides whether a PIN registration made by {@link #registerPinCodeAndCommit} is committed.
+   * Called on the SDK callback thread with the registration result, before it is delivered.
+   */
+  public interface PinCommitCondition {
+    boolean shouldCommit(@NonNull Map<String, Object> registration);
+  }
+
+  /**
+   * What to do when a biometric or PIN signing operation is asked to sign a challenge it already
+   * signed for the same user.
+   */
+  public enum ChallengeReplayPolicy {
+    /** Always sign again. */
+    OFF,
+    /** Reject the repeat without prompting the user. */
+    REJECT,
+    /**
+     * Settle the repeat with the result of the earlier operation. PIN authentications are
+     * rejected instead, since the earlier signature would be returned without checking the PIN.
+     */
+    RETURN_CACHED
+  }
+
+  /**
+   * How {@link #enableSimulation} draws the latency of each simulated call.
+   */
+  public enum LatencyDistribution {
+    /** Always the mean latency. */
+    FIXED,
+    /** Uniform between the minimum and maximum latency. */
+    UNIFORM,
+    /** Minimum latency plus an exponential tail with the given mean, capped at the maximum. */
+    EXPONENTIAL
+  }
+
+  private static final String NO_ACTIVITY_MESSAGE = "No current activity";
+  private static final String NOT_APP_COMPAT_ACTIVITY_MESSAGE =
+    "current activity is not an instance of AppCompatActivity";
+
+  @Nullable private static TsAuthenticationEngine instance;
+
+  private final Context context;
+  private final Map<String, Object> contextStore = new ConcurrentHashMap<>();
+  private final FlightRecorder flightRecorder;
+  private final UsernameHasher usernameHasher;
+  private final AuthenticatorStats persistentAuthenticatorStats;
+  // The persistent statistics, or in-memory ones while the gateway is simulated. Operations keep
+  // the instance that was current when they started.
+  private volatile AuthenticatorStats authenticatorStats;
+  private final ChallengeCache challengeCache = new ChallengeCache();
+  private final PublicKeyCache publicKeyCache = new PublicKeyCache();
+  private final Preconnector preconnector = new Preconnector();
+  private volatile TsAuthenticationGateway gateway = new RealTsAuthenticationGateway();
+  private volatile boolean preconnectOnInitialize = false;
+  @Nullable private volatile TsAuthenticationFuture<Map<String, Object>> lastPreconnect;
+
+  /**
+   * @return the engine shared by the React module and native callers of this process.
+   */
+  @NonNull
+  public static synchronized TsAuthenticationEngine getInstance(@NonNull Context context) {
+    if (instance == null) {
+      instance = new TsAuthenticationEngine(context.getApplicationContext());
+    }
+    return instance;
+  }
+
+  TsAuthenticationEngine(@NonNull Context context) {
+    this.context = context;
+    this.usernameHasher = new UsernameHasher(context.getFilesDir());
+    this.flightRecorder = new FlightRecorder(usernameHasher);
+    this.persistentAuthenticatorStats = new AuthenticatorStats(context.getFilesDir(), usernameHasher);
+    this.authenticatorStats = persistentAuthenticatorStats;
+  }
+
+  // region SDK Init
+
+  public void initializeSDK() {
+    gateway.initializeSDK(context);
+  }
+
+  @NonNull
+  public TsAuthenticationFuture<Boolean> initialize(
+    @Nullable Activity activity,
+    @NonNull String clientId,
+    @NonNull String domain,
+    @NonNull String baseUrl) {
+    long token = flightRecorder.begin(FlightRecorder.METHOD_INITIALIZE, null);
+    TsAuthenticationFuture<Boolean> future = new TsAuthenticationFuture<>();
+
+    if (activity == null) {
+      return failNoActivity(future, token);
+    }
+
+    gateway.initialize(context, clientId);
+    if (preconnectOnInitialize && baseUrl.length() > 0) {
+      preconnect(baseUrl);
+    }
+    succeed(future, token, true);
+    return future;
+  }
+
+  /**
+   * Resolves and opens a TLS connection to the base URL in the background, so the first SDK
+   * request finds the DNS and TLS session caches warm.
+   *
+   * @return a report of the cold connection phases and of the time a warm connection saves.
+   */
+  @NonNull
+  public TsAuthenticationFuture<Map<String, Object>> preconnect(@NonNull String baseUrl) {
+    TsAuthenticationFuture<Map<String, Object>> future = preconnector.preconnect(baseUrl);
+    lastPreconnect = future;
+    return future;
+  }
+
+  /**
+   * @return the latest preconnect started by {@link #preconnect} or by initialize, or null.
+   */
+  @Nullable
+  public TsAuthenticationFuture<Map<String, Object>> getLastPreconnect() {
+    return lastPreconnect;
+  }
+
+  // region Configuration
+
+  /**
+   * Configures how repeated challenges are handled by {@link #authenticateNativeBiometrics},
+   * {@link #approvalNativeBiometrics} and {@link #authenticatePinCode}. Clears the challenges
+   * remembered so far.
+   *
+   * @param ttlMs how long a signed challenge is remembered.
+   * @param maxEntries how many signed challenges are remembered.
+   */
+  public void setChallengeReplayPolicy(@NonNull ChallengeReplayPolicy policy, long ttlMs, int maxEntries) {
+    challengeCache.configure(policy, ttlMs, maxEntries);
+  }
+
+  /**
+   * When enabled, {@link #initialize} preconnects to its base URL in the background.
+   */
+  public void setPreconnectOnInitialize(boolean enabled) {
+    preconnectOnInitialize = enabled;
+  }
+
+  /**
+   * When enabled, {@link #registerNativeBiometrics}, {@link #registerPinCode},
+   * {@link #registerPinCodeAndCommit} and {@link #getDeviceInfo} leave "publicKey" out of their
+   * results and keep it for {@link #getPublicKey}. Clears the keys kept so far.
+   *
+   * @param maxEntries how many public keys are kept; at least 1.
+   */
+  public void setLazyPublicKeys(boolean enabled, int maxEntries) {
+    publicKeyCache.configure(enabled, maxEntries);
+  }
+
+  /**
+   * Replaces the SDK with a simulation that needs no keystore, biometric hardware or backend, for
+   * load tests and CI. Calls made with the same seed, in the same order, get the same latencies,
+   * errors and results. Simulated calls feed a fresh in-memory copy of the authenticator
+   * statistics, which is dropped when the simulation ends.
+   *
+   * @param errorRates probability of failing with each error type, e.g. "networkError" to 0.05.
+   */
+  public synchronized void enableSimulation(
+    long seed,
+    @NonNull LatencyDistribution distribution,
+    long minLatencyMs,
+    long meanLatencyMs,
+    long maxLatencyMs,
+    @NonNull Map<String, Double> errorRates) {
+    setGateway(new SimulatedTsAuthenticationGateway(
+      seed, distribution, minLatencyMs, meanLatencyMs, maxLatencyMs, errorRates));
+  }
+
+  /**
+   * Goes back to the SDK after {@link #enableSimulation}.
+   */
+  public synchronized void disableSimulation() {
+    if (gateway instanceof SimulatedTsAuthenticationGateway) {
+      setGateway(new RealTsAuthenticationGateway());
+    }
+  }
+
+  /**
+   * Swaps the gateway every later call goes through; calls in flight finish on the previous one.
+   */
+  synchronized void setGateway(@NonNull TsAuthenticationGateway replacement) {
+    // Set before the gateway: a call that reads the new gateway then reads the matching stats.
+    authenticatorStats = replacement instanceof SimulatedTsAuthenticationGateway
+      ? new AuthenticatorStats(null, usernameHasher)
+      : persistentAuthenticatorStats;
+    TsAuthenticationGateway previous = gateway;
+    gateway = replacement;
+    if (previous instanceof SimulatedTsAuthenticationGateway) {
+      ((SimulatedTsAuthenticationGateway) previous).shutdown();
+    }
+  }
+
+  // region Registration
+
+  @NonNull
+  public TsAuthenticationFuture<Map<String, Object>> registerWebAuthn(
+    @Nullable Activity activity,
+    @NonNull String username,
+    @NonNull String displayName) {
+    long token = flightRecorder.begin(FlightRecorder.METHOD_REGISTER_WEBAUTHN, username);
+    TsAuthenticationFuture<Map<String, Object>> future = new TsAuthenticationFuture<>();
+
+    if (activity == null) {
+      return failNoActivity(future, token);
+    }
+
+    if (!gateway.isWebAuthnSupported()) {
+      fail(future, token, FlightRecorder.ERROR_UNSUPPORTED, "Unsupported platform");
+      return future;
+    }
+
+    gateway.registerWebAuthn(
+        activity,
+        username,
+        displayName,
+        new OnceCallback<Map<String, Object>>() {
+          private final AuthenticatorStats stats = authenticatorStats;
+
+          @Override
+          void onSuccess(@NonNull Map<String, Object> result) {
+            stats.recordRegistration(AuthenticatorStats.AUTHENTICATOR_WEBAUTHN, username);
+            succeed(future, token, result);
+          }
+
+          @Override
+          void onError(@NonNull String errorType, @NonNull String message) {
+            fail(future, token, FlightRecorder.sdkErrorCategory(errorType), message);
+          }
+        });
+    return future;
+  }
+
+  // region Authentication
+
+  @NonNull
+  public TsAuthenticationFuture<Map<String, Object>> authenticateWebAuthn(
+    @Nullable Activity activity,
+    @NonNull String username) {
+    long token = flightRecorder.begin(FlightRecorder.METHOD_AUTHENTICATE_WEBAUTHN, username);
+    TsAuthenticationFuture<Map<String, Object>> future = new TsAuthenticationFuture<>();
+
+    if (activity == null) {
+      return failNoActivity(future, token);
+    }
+
+    gateway.authenticateWebAuthn(
+        activity,
+        username,
+        new AttemptCallback(future, token, AuthenticatorStats.AUTHENTICATOR_WEBAUTHN, username));
+    return future;
+  }
+
+  // region Transaction
+
+  @NonNull
+  public TsAuthenticationFuture<Map<String, Object>> signTransactionWebAuthn(
+    @Nullable Activity activity,
+    @NonNull String username) {
+    long token = flightRecorder.begin(FlightRecorder.METHOD_SIGN_TRANSACTION_WEBAUTHN, username);
+    TsAuthenticationFuture<Map<String, Object>> future = new TsAuthenticationFuture<>();
+
+    if (activity == null) {
+      return failNoActivity(future, token);
+    }
+
+    gateway.signTransactionWebAuthn(
+        activity,
+        username,
+        new AttemptCallback(future, token, AuthenticatorStats.AUTHENTICATOR_WEBAUTHN, username));
+    return future;
+  }
+
+  // region Native Biometrics
+
+  @NonNull
+  public TsAuthenticationFuture<Map<String, Object>> registerNativeBiometrics(
+    @Nullable Activity activity,
+    @NonNull String username) {
+    long token = flightRecorder.begin(FlightRecorder.METHOD_REGISTER_NATIVE_BIOMETRICS, username);
+    TsAuthenticationFuture<Map<String, Object>> future = new TsAuthenticationFuture<>();
+
+    if (activity == null) {
+      return failNoActivity(future, token);
+    }
+
+    gateway.registerNativeBiometrics(
+        activity,
+        username,
+        new OnceCallback<Map<String, Object>>() {
+          private final AuthenticatorStats stats = authenticatorStats;
+
+          @Override
+          void onSuccess(@NonNull Map<String, Object> result) {
+            stats.recordRegistration(AuthenticatorStats.AUTHENTICATOR_NATIVE_BIOMETRICS, username);
+            succeed(future, token, publicKeyCache.detach(result));
+          }
+
+          @Override
+          void onError(@NonNull String errorType, @NonNull String message) {
+            fail(future, token, FlightRecorder.sdkErrorCategory(errorType), message);
+          }
+        });
+    return future;
+  }
+
+  @NonNull
+  public TsAuthenticationFuture<Map<String, Object>> authenticateNativeBiometrics(
+    @Nullable Activity activity,
+    @NonNull String username,
+    @NonNull String challenge) {
+    long token = flightRecorder.begin(FlightRecorder.METHOD_AUTHENTICATE_NATIVE_BIOMETRICS, username);
+    TsAuthenticationFuture<Map<String, Object>> future = new TsAuthenticationFuture<>();
+
+    if (activity == null) {
+      return failNoActivity(future, token);
+    }
+
+    if (!(activity instanceof AppCompatActivity)) {
+      fail(future, token, FlightRecorder.ERROR_UNSUPPORTED_ACTIVITY, NOT_APP_COMPAT_ACTIVITY_MESSAGE);
+      return future;
+    }
+
+    TsAuthenticationFuture<Map<String, Object>> earlier =
+      checkReplay(FlightRecorder.METHOD_AUTHENTICATE_NATIVE_BIOMETRICS, username, challenge, true, token, future);
+    if (earlier != null) {
+      return earlier;
+    }
+
+    gateway.authenticateNativeBiometrics(
+        (AppCompatActivity) activity,
+        username,
+        challenge,
+        getBiometricPromptTexts(),
+        new AttemptCallback(future, token, AuthenticatorStats.AUTHENTICATOR_NATIVE_BIOMETRICS, username)
+          .forgetChallengeOnError(FlightRecorder.METHOD_AUTHENTICATE_NATIVE_BIOMETRICS, challenge));
+    return future;
+  }
+
+  // region Approvals
+
+  @NonNull
+  public TsAuthenticationFuture<Map<String, Object>> approvalWebAuthn(
+    @Nullable Activity activity,
+    @Nullable String username,
+    @NonNull Map<String, Object> approvalData) {
+    long token = flightRecorder.begin(FlightRecorder.METHOD_APPROVAL_WEBAUTHN, username);
+    TsAuthenticationFuture<Map<String, Object>> future = new TsAuthenticationFuture<>();
+
+    if (activity == null) {
+      return failNoActivity(future, token);
+    }
+
+    Map<String, String> approvalDataMap = new HashMap<>();
+    for (Map.Entry<String, Object> entry : approvalData.entrySet()) {
+      approvalDataMap.put(entry.getKey(), entry.getValue().toString());
+    }
+
+    gateway.approvalWebAuthn(
+        activity,
+        username,
+        approvalDataMap,
+        new AttemptCallback(future, token, AuthenticatorStats.AUTHENTICATOR_WEBAUTHN, username));
+    return future;
+  }
+
+  @NonNull
+  public TsAuthenticationFuture<Map<String, Object>> approvalWebAuthnWithData(
+    @Nullable Activity activity,
+    @Nullable Map<String, Object> rawAuthenticationData) {
+    long token = flightRecorder.begin(FlightRecorder.METHOD_APPROVAL_WEBAUTHN_WITH_DATA, null);
+    TsAuthenticationFuture<Map<String, Object>> future = new TsAuthenticationFuture<>();
+
+    if (activity == null) {
+      return failNoActivity(future, token);
+    }
+
+    if (rawAuthenticationData == null || rawAuthenticationData.isEmpty()) {
+      fail(future, token, FlightRecorder.ERROR_INVALID_INPUT, "Invalid authentication data");
+      return future;
+    }
+
+    TSWebAuthnAuthenticationData authData = convertWebAuthnAuthenticationData(rawAuthenticationData);
+
+    if (authData == null) {
+      fail(future, token, FlightRecorder.ERROR_INVALID_INPUT, "Error converting authentication data.");
+      return future;
+    }
+
+    gateway.approvalWebAuthn(
+        activity,
+        authData,
+        new AttemptCallback(future, token, AuthenticatorStats.AUTHENTICATOR_WEBAUTHN, null));
+    return future;
+  }
+
+  @NonNull
+  public TsAuthenticationFuture<Map<String, Object>> approvalNativeBiometrics(
+    @Nullable Activity activity,
+    @NonNull String username,
+    @NonNull String challenge) {
+    long token = flightRecorder.begin(FlightRecorder.METHOD_APPROVAL_NATIVE_BIOMETRICS, username);
+    TsAuthenticationFuture<Map<String, Object>> future = new TsAuthenticationFuture<>();
+
+    if (activity == null) {
+      return failNoActivity(future, token);
+    }
+
+    if (!(activity instanceof AppCompatActivity)) {
+      fail(future, token, FlightRecorder.ERROR_UNSUPPORTED_ACTIVITY, NOT_APP_COMPAT_ACTIVITY_MESSAGE);
+      return future;
+    }
+
+    TsAuthenticationFuture<Map<String, Object>> earlier =
+      checkReplay(FlightRecorder.METHOD_APPROVAL_NATIVE_BIOMETRICS, username, challenge, true, token, future);
+    if (earlier != null) {
+      return earlier;
+    }
+
+    gateway.approvalNativeBiometrics(
+        (AppCompatActivity) activity,
+        username,
+        challenge,
+        getBiometricPromptTexts(),
+        new AttemptCallback(future, token, AuthenticatorStats.AUTHENTICATOR_NATIVE_BIOMETRICS, username)
+          .forgetChallengeOnError(FlightRecorder.METHOD_APPROVAL_NATIVE_BIOMETRICS, challenge));
+    return future;
+  }
+
+  // region PIN Authenticator
+
+  /**
+   * Registers a PIN and keeps the registration under the returned "contextIdentifier" until
+   * {@link #commitPinRegistration} is called with it. A registration that is never committed
+   * stays in memory until the process ends.
+   */
+  @NonNull
+  public TsAuthenticationFuture<Map<String, Object>> registerPinCode(
+    @Nullable Activity activity,
+    @NonNull String username,
+    @NonNull String pinCode) {
+    return registerPinCode(activity, username, pinCode, FlightRecorder.METHOD_REGISTER_PIN_CODE, null);
+  }
+
+  /**
+   * Registers a PIN and commits it as soon as the SDK returns the registration, when the
+   * condition holds, without storing the registration context. Each call keeps its context to
+   * itself, so concurrent enrollments do not interfere.
+   *
+   * @return the registration result, with "committed" telling whether it was committed.
+   */
+  @NonNull
+  public TsAuthenticationFuture<Map<String, Object>> registerPinCodeAndCommit(
+    @Nullable Activity activity,
+    @NonNull String username,
+    @NonNull String pinCode,
+    @NonNull PinCommitCondition condition) {
+    return registerPinCode(
+      activity, username, pinCode, FlightRecorder.METHOD_REGISTER_PIN_CODE_AND_COMMIT, condition);
+  }
+
+  private TsAuthenticationFuture<Map<String, Object>> registerPinCode(
+    @Nullable Activity activity,
+    String username,
+    String pinCode,
+    int method,
+    @Nullable PinCommitCondition condition) {
+    long token = flightRecorder.begin(method, username);
+    TsAuthenticationFuture<Map<String, Object>> future = new TsAuthenticationFuture<>();
+
+    if (activity == null) {
+      return failNoActivity(future, token);
+    }
+
+    if (!(activity instanceof AppCompatActivity)) {
+      fail(future, token, FlightRecorder.ERROR_UNSUPPORTED_ACTIVITY, NOT_APP_COMPAT_ACTIVITY_MESSAGE);
+      return future;
+    }
+
+    gateway.registerPinCode(
+      username,
+      pinCode,
+      new OnceCallback<TsAuthenticationGateway.PinRegistration>() {
+          private final AuthenticatorStats stats = authenticatorStats;
+
+          @Override
+          void onSuccess(@NonNull TsAuthenticationGateway.PinRegistration registration) {
+            Map<String, Object> map = new HashMap<>(registration.result());
+
+            if (condition == null) {
+              String contextIdentifier = generateContextIdentifier();
+              storeContextWithIdentifier(contextIdentifier, new PendingPinRegistration(registration, username, stats));
+              map.put("contextIdentifier", contextIdentifier);
+            } else {
+              boolean committed;
+              try {
+                committed = condition.shouldCommit(map);
+                if (committed) {
+                  registration.commit();
+                }
+              } catch (RuntimeException e) {
+                fail(future, token, FlightRecorder.ERROR_SDK, "PIN registration commit failed: " + e.getMessage());
+                return;
+              }
+              if (committed) {
+                stats.recordRegistration(AuthenticatorStats.AUTHENTICATOR_PIN_CODE, username);
+              }
+              map.put("committed", committed);
+            }
+
+            succeed(future, token, publicKeyCache.detach(map));
+          }
+
+          @Override
+          void onError(@NonNull String errorType, @NonNull String message) {
+            fail(future, token, FlightRecorder.sdkErrorCategory(errorType), message);
+          }
+        });
+    return future;
+  }
+
+  @NonNull
+  public TsAuthenticationFuture<Boolean> commitPinRegistration(@NonNull String contextIdentifier) {
+    long token = flightRecorder.begin(FlightRecorder.METHOD_COMMIT_PIN_REGISTRATION, null);
+    TsAuthenticationFuture<Boolean> future = new TsAuthenticationFuture<>();
+
+    PendingPinRegistration pending = (PendingPinRegistration) removeContextWithIdentifier(contextIdentifier);
+
+    if (pending == null) {
+      fail(future, token, FlightRecorder.ERROR_CONTEXT_NOT_FOUND,
+        "PIN Registration Context not found for the context identifier provided");
+    } else {
+      try {
+        pending.registration.commit();
+      } catch (RuntimeException e) {
+        fail(future, token, FlightRecorder.ERROR_SDK, "PIN registration commit failed: " + e.getMessage());
+        return future;
+      }
+      pending.stats.recordRegistration(AuthenticatorStats.AUTHENTICATOR_PIN_CODE, pending.username);
+      succeed(future, token, true);
+    }
+    return future;
+  }
+
+  @NonNull
+  public TsAuthenticationFuture<Map<String, Object>> authenticatePinCode(
+    @Nullable Activity activity,
+    @NonNull String username,
+    @NonNull String pinCode,
+    @NonNull String challenge) {
+    long token = flightRecorder.begin(FlightRecorder.METHOD_AUTHENTICATE_PIN_CODE, username);
+    TsAuthenticationFuture<Map<String, Object>> future = new TsAuthenticationFuture<>();
+
+    if (activity == null) {
+      return failNoActivity(future, token);
+    }
+
+    if (!(activity instanceof AppCompatActivity)) {
+      fail(future, token, FlightRecorder.ERROR_UNSUPPORTED_ACTIVITY, NOT_APP_COMPAT_ACTIVITY_MESSAGE);
+      return future;
+    }
+
+    // The cache key leaves out the PIN, so a cached signature must not answer a repeat.
+    TsAuthenticationFuture<Map<String, Object>> earlier =
+      checkReplay(FlightRecorder.METHOD_AUTHENTICATE_PIN_CODE, username, challenge, false, token, future);
+    if (earlier != null) {
+      return earlier;
+    }
+
+    gateway.authenticatePinCode(
+      username,
+      pinCode,
+      challenge,
+      new AttemptCallback(future, token, AuthenticatorStats.AUTHENTICATOR_PIN_CODE, username)
+        .forgetChallengeOnError(FlightRecorder.METHOD_AUTHENTICATE_PIN_CODE, challenge));
+    return future;
+  }
+
+  // region Device Info
+
+  @NonNull
+  public TsAuthenticationFuture<Map<String, Object>> getDeviceInfo(@Nullable Activity activity) {
+    long token = flightRecorder.begin(FlightRecorder.METHOD_GET_DEVICE_INFO, null);
+    TsAuthenticationFuture<Map<String, Object>> future = new TsAuthenticationFuture<>();
+
+    if (activity == null) {
+      return failNoActivity(future, token);
+    }
+
+    gateway.getDeviceInfo(
+        activity,
+        new OnceCallback<Map<String, Object>>() {
+          @Override
+          void onSuccess(@NonNull Map<String, Object> result) {
+            succeed(future, token, publicKeyCache.detach(result));
+          }
+
+          @Override
+          void onError(@NonNull String errorType, @NonNull String message) {
+            fail(future, token, FlightRecorder.sdkErrorCategory(errorType), message);
+          }
+        });
+    return future;
+  }
+
+  public boolean isWebAuthnSupported() {
+    return gateway.isWebAuthnSupported();
+  }
+
+  /**
+   * @return the public key left out of a result while lazy public keys are enabled, or null when
+   * it is no longer kept.
+   */
+  @Nullable
+  public String getPublicKey(@Nullable String publicKeyId) {
+    return publicKeyCache.get(publicKeyId);
+  }
+
+  // region Diagnostics
+
+  /**
+   * @return the operations kept by the flight recorder, oldest first.
+   */
+  @NonNull
+  public List<Map<String, Object>> dumpFlightRecorder() {
+    List<Map<String, Object>> entries = new ArrayList<>();
+    for (FlightRecorder.Entry entry : flightRecorder.snapshot()) {
+      Map<String, Object> map = new HashMap<>();
+      map.put("sequence", (double) entry.sequence);
+      map.put("method", entry.method);
+      map.put("usernameHash", Long.toHexString(entry.usernameHash));
+      map.put("startTime", (double) entry.startTime);
+      map.put("endTime", entry.endTime > 0 ? (double) entry.endTime : null);
+      map.put("outcome", entry.outcome);
+      map.put("errorCategory", entry.errorCategory);
+      entries.add(map);
+    }
+    return entries;
+  }
+
+  /**
+   * @return the fastest reliable authenticator registered for the user, or null.
+   */
+  @Nullable
+  public String recommendAuthenticator(@Nullable String username) {
+    return authenticatorStats.recommend(username);
+  }
+
+  // region Context Store
+
+  private String generateContextIdentifier() {
+    return UUID.randomUUID().toString();
+  }
+
+  private void storeContextWithIdentifier(String identifier, Object context) {
+    contextStore.put(identifier, context);
+  }
+
+  @Nullable
+  private Object removeContextWithIdentifier(String identifier) {
+    return contextStore.remove(identifier);
+  }
+
+  /**
+   * @return how many PIN registrations are waiting to be committed.
+   */
+  int pendingPinRegistrationCount() {
+    return contextStore.size();
+  }
+
+  /**
+   * A PIN registration waiting for {@link #commitPinRegistration}, with the user and statistics it
+   * is recorded in once committed.
+   */
+  private static final class PendingPinRegistration {
+    final TsAuthenticationGateway.PinRegistration registration;
+    final String username;
+    final AuthenticatorStats stats;
+
+    PendingPinRegistration(
+      TsAuthenticationGateway.PinRegistration registration,
+      String username,
+      AuthenticatorStats stats) {
+      this.registration = registration;
+      this.username = username;
+      this.stats = stats;
+    }
+  }
+
+  // region Helpers
+
+  private <T> void succeed(TsAuthenticationFuture<T> future, long token, T result) {
+    flightRecorder.end(token, FlightRecorder.OUTCOME_SUCCESS, FlightRecorder.ERROR_NONE);
+    future.complete(result);
+  }
+
+  private <T> void fail(TsAuthenticationFuture<T> future, long token, int errorCategory, String message) {
+    flightRecorder.end(token, FlightRecorder.OUTCOME_FAILURE, errorCategory);
+    future.fail(new TsAuthenticationException(TsAuthenticationException.DEFAULT_CODE, message, errorCategory));
+  }
+
+  /**
+   * Checks a challenge against the ones recently signed for the user.
+   *
+   * @param canReturnCached whether a repeat may settle with the earlier result, when the policy
+   *                        says so; otherwise it is rejected.
+   * @return the future to hand back when the challenge is a repeat, or null to go on signing it.
+   */
+  @Nullable
+  private TsAuthenticationFuture<Map<String, Object>> checkReplay(
+    int method,
+    String username,
+    String challenge,
+    boolean canReturnCached,
+    long token,
+    TsAuthenticationFuture<Map<String, Object>> future) {
+    TsAuthenticationFuture<Map<String, Object>> earlier =
+      challengeCache.putIfAbsent(method, username, challenge, future);
+    if (earlier == null) {
+      return null;
+    }
+
+    if (canReturnCached && challengeCache.getPolicy() == ChallengeReplayPolicy.RETURN_CACHED) {
+      // The repeat settles with the earlier operation, which may still be prompting the user.
+      earlier.addListener(new Listener<Map<String, Object>>() {
+        @Override
+        public void onSuccess(@Nullable Map<String, Object> result) {
+          flightRecorder.end(token, FlightRecorder.OUTCOME_SUCCESS, FlightRecorder.ERROR_NONE);
+        }
+
+        @Override
+        public void onError(@NonNull TsAuthenticationException error) {
+          flightRecorder.end(token, FlightRecorder.OUTCOME_FAILURE, error.getErrorCategory());
+        }
+      });
+      return earlier;
+    }
+    flightRecorder.end(token, FlightRecorder.OUTCOME_FAILURE, FlightRecorder.ERROR_REPLAYED_CHALLENGE);
+    future.fail(new TsAuthenticationException(
+      TsAuthenticationException.REPLAYED_CHALLENGE_CODE,
+      "Challenge was already signed",
+      FlightRecorder.ERROR_REPLAYED_CHALLENGE));
+    return future;
+  }
+
+  /**
+   * Gateway callback that acts on the first outcome only. A duplicate SDK callback would otherwise
+   * store an orphaned PIN registration context, or record the flight and statistics twice.
+   */
+  private abstract static class OnceCallback<T> implements TsAuthenticationGateway.Callback<T> {
+
+    private final AtomicBoolean called = new AtomicBoolean();
+
+    @Override
+    public final void success(@NonNull T result) {
+      if (called.compareAndSet(false, true)) {
+        onSuccess(result);
+      }
+    }
+
+    @Override
+    public final void error(@NonNull String errorType, @NonNull String message) {
+      if (called.compareAndSet(false, true)) {
+        onError(errorType, message);
+      }
+    }
+
+    abstract void onSuccess(@NonNull T result);
+
+    abstract void onError(@NonNull String errorType, @NonNull String message);
+  }
+
+  /**
+   * Settles an authentication attempt and records its latency and outcome for the authenticator,
+   * unless the user canceled it.
+   */
+  private class AttemptCallback extends OnceCallback<Map<String, Object>> {
+
+    private final TsAuthenticationFuture<Map<String, Object>> future;
+    private final long token;
+    private final int authenticator;
+    @Nullable private final String username;
+    private final AuthenticatorStats stats = authenticatorStats;
+    private final long startedAt = SystemClock.elapsedRealtime();
+    private int replayMethod = -1;
+    @Nullable private String challenge;
+
+    AttemptCallback(
+      TsAuthenticationFuture<Map<String, Object>> future,
+      long token,
+      int authenticator,
+      @Nullable String username) {
+      this.future = future;
+      this.token = token;
+      this.authenticator = authenticator;
+      this.username = username;
+    }
+
+    /**
+     * Drops the challenge from the replay cache when the attempt fails, so it can be signed again.
+     */
+    AttemptCallback forgetChallengeOnError(int method, String challenge) {
+      this.replayMethod = method;
+      this.challenge = challenge;
+      return this;
+    }
+
+    @Override
+    void onSuccess(@NonNull Map<String, Object> result) {
+      stats.recordAttempt(authenticator, username, SystemClock.elapsedRealtime() - startedAt, true);
+      succeed(future, token, result);
+    }
+
+    @Override
+    void onError(@NonNull String errorType, @NonNull String message) {
+      int errorCategory = FlightRecorder.sdkErrorCategory(errorType);
+      if (errorCategory != FlightRecorder.ERROR_USER_CANCELED) {
+        stats.recordAttempt(authenticator, username, SystemClock.elapsedRealtime() - startedAt, false);
+      }
+      if (challenge != null) {
+        challengeCache.remove(replayMethod, username, challenge, future);
+      }
+      fail(future, token, errorCategory, message);
+    }
+  }
+
+  private <T> TsAuthenticationFuture<T> failNoActivity(TsAuthenticationFuture<T> future, long token) {
+    fail(future, token, FlightRecorder.ERROR_NO_ACTIVITY, NO_ACTIVITY_MESSAGE);
+    return future;
+  }
+
+  private TSWebAuthnAuthenticationData convertWebAuthnAuthenticationData(
+    java.util.Map<String, Object> rawData) {
+
+    String webAuthnSessionId = (String) rawData.get("webauthnSessionId");
+    if (webAuthnSessionId == null || webAuthnSessionId.isEmpty()) {
+      return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    java.util.Map<String, Object> rawCredentialRequestOptions =
+      (java.util.Map<String, Object>) rawData.get("credentialRequestOptions");
+    if (rawCredentialRequestOptions == null) {
+      return null;
+    }
+
+    String challenge = (String) rawCredentialRequestOptions.get("challenge");
+    String rawChallenge = (String) rawCredentialRequestOptions.get("rawChallenge");
+    String userVerification = (String) rawCredentialRequestOptions.get("userVerification");
+
+    Object allowCredentialObj = rawCredentialRequestOptions.get("allowCredentials");
+    TSAllowCredentials[] allowCredentials = null;
+    if (allowCredentialObj instanceof List) {
+      List<?> allowCredentialsList = (List<?>) allowCredentialObj;
+      allowCredentials = this.convertAllowCredentials(allowCredentialsList);
+    }
+
+    String rpId = (String) rawCredentialRequestOptions.get("rpId");
+    Double timeout = (Double) rawCredentialRequestOptions.get("timeout");
+
+    String attestation = (String) rawCredentialRequestOptions.get("attestation");
+
+    Object transportsObj = rawCredentialRequestOptions.get("transports");
+    JSONObject transportsJson = null;
+    try {
+      if (transportsObj instanceof List) {
+        List<?> transportsList = (List<?>) transportsObj;
+        JSONArray transportsArray = new JSONArray();
+        for (Object t : transportsList) {
+          if (t instanceof String) {
+            transportsArray.put(t);
+          }
+        }
+        transportsJson = new JSONObject();
+        transportsJson.put("transports", transportsArray);
+      }
+    } catch (Exception e) {
+      transportsJson = null;
+    }
+
+    TSCredentialRequestOptions credentialRequestOptions = new TSCredentialRequestOptions(
+      challenge != null ? challenge : "",
+      rawChallenge,
+      userVerification,
+      transportsJson,
+      allowCredentials,
+      rpId,
+      timeout,
+      attestation
+    );
+
+    TSWebAuthnAuthenticationData authData = new TSWebAuthnAuthenticationData(
+      webAuthnSessionId,
+      credentialRequestOptions
+    );
+
+    return authData;
+  }
+
+  @SuppressWarnings("unchecked")
+  private TSAllowCredentials[] convertAllowCredentials(List<?> allowCredentialsArray) {
+    List<TSAllowCredentials> result = new ArrayList<>();
+    for (Object item : allowCredentialsArray) {
+      if (item instanceof Map) {
+        Map<String, Object> rawAllowCredential = (Map<String, Object>) item;
+        String[] transports = null;
+        Object transportsObj = rawAllowCredential.get("transports");
+        if (transportsObj instanceof List) {
+          List<?> transportsList = (List<?>) transportsObj;
+          transports = transportsList.stream()
+            .filter(String.class::isInstance)
+            .map(String.class::cast)
+            .toArray(String[]::new);
+        }
+        TSAllowCredentials data = new TSAllowCredentials(
+          (String) rawAllowCredential.get("type"),
+          (String) rawAllowCredential.get("id"),
+          transports
+        );
+        result.add(data);
+      }
+    }
+    return result.toArray(new TSAllowCredentials[0]);
+  }
+
+  private BiometricPromptTexts getBiometricPromptTexts() {
+    String titleTxt = getStringResourceByName("BiometricPromptTitle", "Authenticate with Biometrics");
+    String subtitleTxt = getStringResourceByName("BiometricPromptSubtitle",
+        "Use your device biometrics to authenticate.");
+    String cancelTxt = getStringResourceByName("BiometricPromptCancel", "Cancel");
+
+    return new BiometricPromptTexts(titleTxt, subtitleTxt, cancelTxt);
+  }
+
+  private String getStringResourceByName(String resourceName, String defaultValue) {
+    int resId = context.getResources().getIdentifier(resourceName, "string", context.getPackageName());
+    return resId != 0 ? context.getString(resId) : defaultValue;
+  }
+}
@@ -0,0 +1,43 @@
+package com.tsauthentication;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Failure reported by {@link TsAuthenticationEngine}. The code and message are the ones the React
+ * module rejects its promises with.
+ */
+public class TsAuthenticationException extends Exception {
+
+  public static final String DEFAULT_CODE = "result";
+  /** Code of a signing operation rejected because its challenge was already signed. */
+  public static final String REPLAYED_CHALLENGE_CODE = "replayedChallenge";
+
+  private final String code;
+  private final int errorCategory;
+
+  public TsAuthenticationException(@NonNull String message) {
+    this(DEFAULT_CODE, message);
+  }
+
+  public TsAuthenticationException(@NonNull String code, @NonNull String message) {
+    this(code, message, FlightRecorder.ERROR_SDK);
+  }
+
+  TsAuthenticationException(@NonNull String code, @NonNull String message, int errorCategory) {
+    super(message);
+    this.code = code;
+    this.errorCategory = errorCategory;
+  }
+
+  @NonNull
+  public String getCode() {
+    return code;
+  }
+
+  /**
+   * @return the flight recorder category of the failure.
+   */
+  int getErrorCategory() {
+    return errorCategory;
+  }
+}
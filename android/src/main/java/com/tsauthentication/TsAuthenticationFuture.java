@@ -0,0 +1,143 @@
+package com.tsauthentication;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Result of a {@link TsAuthenticationEngine} operation. Callers either block on {@link #get()} or
+ * register a {@link TsAuthenticationEngine.Listener}. The future settles at most once; later
+ * attempts to complete it are ignored.
+ */
+public final class TsAuthenticationFuture<T> implements Future<T> {
+
+  private final Object lock = new Object();
+  private List<TsAuthenticationEngine.Listener<T>> listeners = new ArrayList<>();
+  private boolean done = false;
+  @Nullable private T result;
+  @Nullable private TsAuthenticationException error;
+
+  TsAuthenticationFuture() {
+  }
+
+  /**
+   * Registers a listener, called on the thread that settles the future or immediately when the
+   * future has already settled.
+   */
+  @NonNull
+  public TsAuthenticationFuture<T> addListener(@NonNull TsAuthenticationEngine.Listener<T> listener) {
+    synchronized (lock) {
+      if (!done) {
+        listeners.add(listener);
+        return this;
+      }
+    }
+    notifyListener(listener);
+    return this;
+  }
+
+  boolean complete(@Nullable T value) {
+    List<TsAuthenticationEngine.Listener<T>> pending;
+    synchronized (lock) {
+      if (done) {
+        return false;
+      }
+      result = value;
+      pending = settle();
+    }
+    for (TsAuthenticationEngine.Listener<T> listener : pending) {
+      listener.onSuccess(value);
+    }
+    return true;
+  }
+
+  boolean fail(@NonNull TsAuthenticationException exception) {
+    List<TsAuthenticationEngine.Listener<T>> pending;
+    synchronized (lock) {
+      if (done) {
+        return false;
+      }
+      error = exception;
+      pending = settle();
+    }
+    for (TsAuthenticationEngine.Listener<T> listener : pending) {
+      listener.onError(exception);
+    }
+    return true;
+  }
+
+  private List<TsAuthenticationEngine.Listener<T>> settle() {
+    done = true;
+    lock.notifyAll();
+    List<TsAuthenticationEngine.Listener<T>> pending = listeners;
+    listeners = null;
+    return pending;
+  }
+
+  private void notifyListener(TsAuthenticationEngine.Listener<T> listener) {
+    if (error != null) {
+      listener.onError(error);
+    } else {
+      listener.onSuccess(result);
+    }
+  }
+
+  // region Future
+
+  @Override
+  public boolean cancel(boolean mayInterruptIfRunning) {
+    // SDK operations cannot be cancelled once started.
+    return false;
+  }
+
+  @Override
+  public boolean isCancelled() {
+    return false;
+  }
+
+  @Override
+  public boolean isDone() {
+    synchronized (lock) {
+      return done;
+    }
+  }
+
+  @Override
+  public T get() throws InterruptedException, ExecutionException {
+    synchronized (lock) {
+      while (!done) {
+        lock.wait();
+      }
+    }
+    return getResult();
+  }
+
+  @Override
+  public T get(long timeout, @NonNull TimeUnit unit)
+    throws InterruptedException, ExecutionException, TimeoutException {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    synchronized (lock) {
+      while (!done) {
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) {
+          throw new TimeoutException();
+        }
+        TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+      }
+    }
+    return getResult();
+  }
+
+  private T getResult() throws ExecutionException {
+    if (error != null) {
+      throw new ExecutionException(error);
+    }
+    return result;
+  }
+}
@@ -0,0 +1,85 @@
+package com.tsauthentication;
+
+import android.app.Activity;
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.appcompat.app.AppCompatActivity;
+
+import com.transmit.authentication.biometrics.BiometricPromptTexts;
+import com.transmit.authentication.network.startauth.TSWebAuthnAuthenticationData;
+
+import java.util.Map;
+
+/**
+ * Seam between {@link TsAuthenticationEngine} and the Transmit SDK. Results are delivered as the
+ * plain maps the engine hands to its callers, so implementations other than
+ * {@link RealTsAuthenticationGateway} do not need to build SDK result types.
+ */
+interface TsAuthenticationGateway {
+
+  interface Callback<T> {
+    void success(@NonNull T result);
+
+    /**
+     * @param errorType name of the SDK error, mapped to a category by
+     *                  {@link FlightRecorder#sdkErrorCategory(String)}.
+     */
+    void error(@NonNull String errorType, @NonNull String message);
+  }
+
+  /**
+   * A PIN registration that still has to be committed.
+   */
+  interface PinRegistration {
+    @NonNull
+    Map<String, Object> result();
+
+    void commit();
+  }
+
+  void initializeSDK(Context context);
+
+  void initialize(Context context, String clientId);
+
+  boolean isWebAuthnSupported();
+
+  void registerWebAuthn(Activity activity, String username, String displayName, Callback<Map<String, Object>> callback);
+
+  void authenticateWebAuthn(Activity activity, String username, Callback<Map<String, Object>> callback);
+
+  void signTransactionWebAuthn(Activity activity, String username, Callback<Map<String, Object>> callback);
+
+  void registerNativeBiometrics(Activity activity, String username, Callback<Map<String, Object>> callback);
+
+  void authenticateNativeBiometrics(
+    AppCompatActivity activity,
+    String username,
+    String challenge,
+    BiometricPromptTexts promptTexts,
+    Callback<Map<String, Object>> callback);
+
+  void approvalWebAuthn(
+    Activity activity,
+    String username,
+    Map<String, String> approvalData,
+    Callback<Map<String, Object>> callback);
+
+  void approvalWebAuthn(
+    Activity activity,
+    TSWebAuthnAuthenticationData authenticationData,
+    Callback<Map<String, Object>> callback);
+
+  void approvalNativeBiometrics(
+    AppCompatActivity activity,
+    String username,
+    String challenge,
+    BiometricPromptTexts promptTexts,
+    Callback<Map<String, Object>> callback);
+
+  void registerPinCode(String username, String pinCode, Callback<PinRegistration> callback);
+
+  void authenticatePinCode(String username, String pinCode, String challenge, Callback<Map<String, Object>> callback);
+
+  void getDeviceInfo(Activity activity, Callback<Map<String, Object>> callback);
+}
@@ -1,68 +1,42 @@
 package com.tsauthentication;
 
-import android.app.Activity;
-import android.content.Context;
-
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
-import androidx.appcompat.app.AppCompatActivity;
 
+import com.facebook.react.bridge.Arguments;
 import com.facebook.react.bridge.Promise;
 import com.facebook.react.bridge.ReactApplicationContext;
 import com.facebook.react.bridge.ReactContextBaseJavaModule;
 import com.facebook.react.bridge.ReactMethod;
 import com.facebook.react.bridge.ReadableArray;
 import com.facebook.react.bridge.ReadableMap;
-import com.facebook.react.bridge.WritableMap;
-import com.facebook.react.bridge.WritableNativeMap;
+import com.facebook.react.bridge.ReadableType;
 import com.facebook.react.module.annotations.ReactModule;
-import com.transmit.authentication.TSDeviceInfoError;
-import com.transmit.authentication.TSWebAuthnApprovalError;
-import com.transmit.authentication.TSWebAuthnApprovalResult;
-import com.transmit.authentication.TSWebAuthnAuthenticationError;
-import com.transmit.authentication.AuthenticationResult;
-import com.transmit.authentication.RegistrationResult;
-import com.transmit.authentication.TSAuthCallback;
-import com.transmit.authentication.TSAuthentication;
-import com.transmit.authentication.TSWebAuthnRegistrationError;
-import com.transmit.authentication.biometrics.BiometricPromptTexts;
-import com.transmit.authentication.biometrics.TSBiometricsAuthError;
-import com.transmit.authentication.biometrics.TSBiometricsAuthResult;
-import com.transmit.authentication.biometrics.TSBiometricsRegistrationError;
-import com.transmit.authentication.biometrics.TSBiometricsRegistrationResult;
-import com.transmit.authentication.biometrics.TSNativeBiometricsApprovalError;
-import com.transmit.authentication.biometrics.TSNativeBiometricsApprovalResult;
-import com.transmit.authentication.exceptions.TSAuthenticationInitializeException;
-import com.transmit.authentication.DeviceInfo;
-import com.transmit.authentication.network.startauth.TSAllowCredentials;
-import com.transmit.authentication.network.startauth.TSCredentialRequestOptions;
-import com.transmit.authentication.network.startauth.TSWebAuthnAuthenticationData;
-import com.transmit.authentication.pincode.TSPinCodeAuthenticationError;
-import com.transmit.authentication.pincode.TSPinCodeAuthenticationResult;
-import com.transmit.authentication.pincode.TSPinCodeRegistrationContext;
-import com.transmit.authentication.pincode.TSPinCodeRegistrationError;
-import com.transmit.authentication.pincode.TSPinCodeRegistrationResult;
-
-import org.json.JSONArray;
-import org.json.JSONObject;
-
-import java.util.ArrayList;
-import java.util.HashMap;
+
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.UUID;
 
+/**
+ * React Native adapter over {@link TsAuthenticationEngine}: converts bridge arguments to plain
+ * Java values and settles promises with the engine results.
+ */
 @ReactModule(name = TsAuthenticationModule.NAME)
 public class TsAuthenticationModule extends ReactContextBaseJavaModule {
 
   public static final String NAME = "TsAuthentication";
-  private ReactApplicationContext reactContext;
-  private Map<String, Object> contextStore = new HashMap<>();
+  private final ReactApplicationContext reactContext;
+  private final TsAuthenticationEngine engine;
 
 
   public TsAuthenticationModule(ReactApplicationContext reactContext) {
+    this(reactContext, TsAuthenticationEngine.getInstance(reactContext));
+  }
+
+  TsAuthenticationModule(ReactApplicationContext reactContext, TsAuthenticationEngine engine) {
     super(reactContext);
     this.reactContext = reactContext;
+    this.engine = engine;
   }
 
   @Override
@@ -74,69 +48,162 @@ public class TsAuthenticationModule extends ReactContextBaseJavaModule {
   @ReactMethod
   @NonNull
   public void initializeSDK() {
-    TSAuthentication.initializeSDK(reactContext);
+    engine.initializeSDK();
   }
 
   @ReactMethod
   @NonNull
   public void initialize(String clientId, String domain, String baseUrl, Promise promise) {
+    engine.initialize(reactContext.getCurrentActivity(), clientId, domain, baseUrl)
+      .addListener(new PromiseListener<>(promise));
+  }
 
-    if (reactContext.getCurrentActivity() != null) {
-      if (domain.length() > 0) {
-        TSAuthentication.initialize(
-            reactContext,
-            clientId
-        );
-      } else {
-        TSAuthentication.initialize(
-            reactContext,
-            clientId
-        );
-      }
-      promise.resolve(true);
+  @ReactMethod
+  @NonNull
+  public void preconnect(String baseUrl, Promise promise) {
+    engine.preconnect(baseUrl)
+      .addListener(new PromiseListener<>(promise));
+  }
+
+  @ReactMethod
+  @NonNull
+  public void getPreconnectReport(Promise promise) {
+    TsAuthenticationFuture<Map<String, Object>> preconnect = engine.getLastPreconnect();
+    if (preconnect == null) {
+      promise.resolve(null);
+    } else {
+      preconnect.addListener(new PromiseListener<>(promise));
     }
   }
 
-  // Registration
+  // region Configuration
 
   @ReactMethod
   @NonNull
-  public void registerWebAuthn(
-      String username,
-      String displayName,
-      Promise promise) {
+  public void configure(ReadableMap options, Promise promise) {
+    // Every option is validated before any is applied, so a rejected call changes nothing.
+    TsAuthenticationEngine.ChallengeReplayPolicy replayPolicy = null;
+    long replayTtlMs = ChallengeCache.DEFAULT_TTL_MS;
+    int replayMaxEntries = ChallengeCache.DEFAULT_MAX_ENTRIES;
+    Boolean preconnect;
+    ReadableMap lazyPublicKeys;
+    boolean lazyPublicKeysEnabled = false;
+    int lazyPublicKeysMaxEntries = PublicKeyCache.DEFAULT_MAX_ENTRIES;
+    ReadableMap simulation;
+    TsAuthenticationEngine.LatencyDistribution distribution = null;
+    long seed = 0;
+    long minMs = 0;
+    long meanMs = 0;
+    long maxMs = 0;
+    Map<String, Double> errorRates = new LinkedHashMap<>();
 
-    if (reactContext.getCurrentActivity() != null) {
-      Boolean isSupported = TSAuthentication.isWebAuthnSupported();
-      if (!isSupported) {
-        promise.reject(new Error("Unsupported platform"));
-        return;
+    try {
+      ReadableMap challengeReplay = optionalMap(options, "challengeReplay", "challengeReplay");
+      if (challengeReplay != null) {
+        replayPolicy = parseChallengeReplayPolicy(optionalString(challengeReplay, "policy", "challengeReplay.policy"));
+        if (replayPolicy == null) {
+          throw invalidOption("challengeReplay.policy");
+        }
+        double ttlSeconds = optionalNumber(challengeReplay, "ttlSeconds", "challengeReplay.ttlSeconds",
+          ChallengeCache.DEFAULT_TTL_MS / 1000.0);
+        if (ttlSeconds <= 0) {
+          throw invalidOption("challengeReplay.ttlSeconds");
+        }
+        replayTtlMs = (long) (ttlSeconds * 1000);
+        replayMaxEntries = optionalInt(challengeReplay, "maxEntries", "challengeReplay.maxEntries",
+          ChallengeCache.DEFAULT_MAX_ENTRIES);
+        if (replayMaxEntries < 1) {
+          throw invalidOption("challengeReplay.maxEntries");
+        }
       }
 
-      continueRegistration(username, displayName, promise);
-    }
-  }
+      preconnect = optionalBoolean(options, "preconnect", "preconnect", null);
 
-  private void continueRegistration(String username, String displayName, Promise promise) {
-    if (reactContext.getCurrentActivity() != null) {
-      TSAuthentication.registerWebAuthn(
-          reactContext.getCurrentActivity(),
-          username,
-          displayName,
-          new TSAuthCallback<RegistrationResult, TSWebAuthnRegistrationError>() {
-            @Override
-            public void success(RegistrationResult registrationResult) {
-              WritableMap map = new WritableNativeMap();
-              map.putString("result", registrationResult.result());
-              promise.resolve(map);
-            }
+      lazyPublicKeys = optionalMap(options, "lazyPublicKeys", "lazyPublicKeys");
+      if (lazyPublicKeys != null) {
+        lazyPublicKeysEnabled = optionalBoolean(lazyPublicKeys, "enabled", "lazyPublicKeys.enabled", true);
+        lazyPublicKeysMaxEntries = optionalInt(lazyPublicKeys, "maxEntries", "lazyPublicKeys.maxEntries",
+          PublicKeyCache.DEFAULT_MAX_ENTRIES);
+        // With no room in the cache, detached keys would be evicted at once and lost.
+        if (lazyPublicKeysMaxEntries < 1) {
+          throw invalidOption("lazyPublicKeys.maxEntries");
+        }
+      }
 
-            @Override
-            public void error(TSWebAuthnRegistrationError tsWebAuthnRegistrationError) {
-              promise.reject("result", tsWebAuthnRegistrationError.getErrorMessage());
+      simulation = optionalMap(options, "simulation", "simulation");
+      if (simulation != null) {
+        ReadableMap latency = optionalMap(simulation, "latency", "simulation.latency");
+        String distributionName = latency == null ? null : optionalString(latency, "distribution", "simulation.latency.distribution");
+        distribution = parseLatencyDistribution(distributionName == null ? "fixed" : distributionName);
+        if (distribution == null) {
+          throw invalidOption("simulation.latency.distribution");
+        }
+
+        minMs = latency == null ? 0 : (long) optionalNumber(latency, "minMs", "simulation.latency.minMs", 0);
+        meanMs = latency == null ? minMs : (long) optionalNumber(latency, "meanMs", "simulation.latency.meanMs", minMs);
+        maxMs = latency == null ? meanMs * 10 : (long) optionalNumber(latency, "maxMs", "simulation.latency.maxMs", meanMs * 10);
+        if (minMs < 0) {
+          throw invalidOption("simulation.latency.minMs");
+        } else if (meanMs < minMs) {
+          throw invalidOption("simulation.latency.meanMs");
+        } else if (maxMs < meanMs) {
+          throw invalidOption("simulation.latency.maxMs");
+        }
+
+        ReadableMap rates = optionalMap(simulation, "errorRates", "simulation.errorRates");
+        double total = 0;
+        if (rates != null) {
+          for (Map.Entry<String, Object> entry : rates.toHashMap().entrySet()) {
+            if (!(entry.getValue() instanceof Number)) {
+              throw invalidOption("simulation.errorRates." + entry.getKey());
+            }
+            double rate = ((Number) entry.getValue()).doubleValue();
+            if (!(rate >= 0 && rate <= 1)) {
+              throw invalidOption("simulation.errorRates." + entry.getKey());
             }
-          });
+            total += rate;
+            errorRates.put(entry.getKey(), rate);
+          }
+        }
+        if (total > 1 + 1e-9) {
+          throw invalidOption("simulation.errorRates");
+        }
+
+        seed = (long) optionalNumber(simulation, "seed", "simulation.seed", 0);
+      }
+    } catch (TsAuthenticationException e) {
+      promise.reject(e.getCode(), e.getMessage());
+      return;
+    }
+
+    if (replayPolicy != null) {
+      engine.setChallengeReplayPolicy(replayPolicy, replayTtlMs, replayMaxEntries);
+    }
+    if (preconnect != null) {
+      engine.setPreconnectOnInitialize(preconnect);
+    }
+    if (lazyPublicKeys != null) {
+      engine.setLazyPublicKeys(lazyPublicKeysEnabled, lazyPublicKeysMaxEntries);
+    }
+    if (simulation != null) {
+      engine.enableSimulation(seed, distribution, minMs, meanMs, maxMs, errorRates);
+    } else if (options.hasKey("simulation")) {
+      engine.disableSimulation();
     }
+
+    promise.resolve(true);
+  }
+
+  // Registration
+
+  @ReactMethod
+  @NonNull
+  public void registerWebAuthn(
+      String username,
+      String displayName,
+      Promise promise) {
+    engine.registerWebAuthn(reactContext.getCurrentActivity(), username, displayName)
+      .addListener(new PromiseListener<>(promise));
   }
 
   // Authentication
@@ -144,48 +211,16 @@ public class TsAuthenticationModule extends ReactContextBaseJavaModule {
   @ReactMethod
   @NonNull
   public void authenticateWebAuthn(String username, Promise promise) {
-    if (reactContext.getCurrentActivity() != null) {
-      TSAuthentication.authenticateWebAuthn(
-          reactContext.getCurrentActivity(),
-          username,
-          new TSAuthCallback<AuthenticationResult, TSWebAuthnAuthenticationError>() {
-            @Override
-            public void success(AuthenticationResult authenticationResult) {
-              WritableMap map = new WritableNativeMap();
-              map.putString("result", authenticationResult.result());
-              promise.resolve(map);
-            }
-
-            @Override
-            public void error(TSWebAuthnAuthenticationError tsWebAuthnAuthenticationError) {
-              promise.reject("result", tsWebAuthnAuthenticationError.toString());
-            }
-          });
-    }
+    engine.authenticateWebAuthn(reactContext.getCurrentActivity(), username)
+      .addListener(new PromiseListener<>(promise));
   }
 
   // Transaction
   @ReactMethod
   @NonNull
   public void signTransactionWebAuthn(String username, Promise promise) {
-    if (reactContext.getCurrentActivity() != null) {
-      TSAuthentication.signTransactionWebAuthn(
-          reactContext.getCurrentActivity(),
-          username,
-          new TSAuthCallback<AuthenticationResult, TSWebAuthnAuthenticationError>() {
-            @Override
-            public void success(AuthenticationResult authenticationResult) {
-              WritableMap map = new WritableNativeMap();
-              map.putString("result", authenticationResult.result());
-              promise.resolve(map);
-            }
-
-            @Override
-            public void error(TSWebAuthnAuthenticationError tsWebAuthnAuthenticationError) {
-              promise.reject("result", tsWebAuthnAuthenticationError.toString());
-            }
-          });
-    }
+    engine.signTransactionWebAuthn(reactContext.getCurrentActivity(), username)
+      .addListener(new PromiseListener<>(promise));
   }
 
   // Native Biometrics
@@ -193,66 +228,15 @@ public class TsAuthenticationModule extends ReactContextBaseJavaModule {
   @ReactMethod
   @NonNull
   public void registerNativeBiometrics(String username, Promise promise) {
-    if (reactContext.getCurrentActivity() != null) {
-      TSAuthentication.registerNativeBiometrics(
-          reactContext.getCurrentActivity(),
-          username,
-          new TSAuthCallback<TSBiometricsRegistrationResult, TSBiometricsRegistrationError>() {
-            @Override
-            public void success(TSBiometricsRegistrationResult tsBiometricsRegistrationResult) {
-              WritableMap map = new WritableNativeMap();
-              map.putString("publicKeyId", tsBiometricsRegistrationResult.keyId());
-              map.putString("publicKey", tsBiometricsRegistrationResult.publicKey());
-              map.putString("os", "Android");
-              map.putString("keyType", tsBiometricsRegistrationResult.keyType());
-              promise.resolve(map);
-            }
-
-            @Override
-            public void error(TSBiometricsRegistrationError tsBiometricsRegistrationError) {
-              promise.reject("result", tsBiometricsRegistrationError.toString());
-            }
-          });
-    }
+    engine.registerNativeBiometrics(reactContext.getCurrentActivity(), username)
+      .addListener(new PromiseListener<>(promise));
   }
 
   @ReactMethod
   @NonNull
   public void authenticateNativeBiometrics(String username, String challenge, Promise promise) {
-    if (reactContext.getCurrentActivity() != null) {
-
-      AppCompatActivity appCompatActivity = getAppCompatActivity();
-      if (appCompatActivity == null) {
-        promise.reject("result", "current activity is not an instance of AppCompatActivity");
-        return;
-      }
-
-      Map<String, String> biometricsString = getBiometricsStrings();
-      BiometricPromptTexts promptTexts = new BiometricPromptTexts(
-          biometricsString.get("titleTxt"),
-          biometricsString.get("subtitleTxt"),
-          biometricsString.get("cancelTxt"));
-
-      TSAuthentication.authenticateNativeBiometrics(
-          appCompatActivity,
-          username,
-          challenge,
-          promptTexts,
-          new TSAuthCallback<TSBiometricsAuthResult, TSBiometricsAuthError>() {
-            @Override
-            public void success(TSBiometricsAuthResult tsBiometricsAuthResult) {
-              WritableMap map = new WritableNativeMap();
-              map.putString("publicKeyId", tsBiometricsAuthResult.keyId());
-              map.putString("signature", tsBiometricsAuthResult.signature());
-              promise.resolve(map);
-            }
-
-            @Override
-            public void error(TSBiometricsAuthError tsBiometricsAuthError) {
-              promise.reject("result", tsBiometricsAuthError.toString());
-            }
-          });
-    }
+    engine.authenticateNativeBiometrics(reactContext.getCurrentActivity(), username, challenge)
+      .addListener(new PromiseListener<>(promise));
   }
 
   // region Approvals
@@ -260,30 +244,8 @@ public class TsAuthenticationModule extends ReactContextBaseJavaModule {
   @ReactMethod
   @NonNull
   public void approvalWebAuthn(String username, ReadableMap approvalData, ReadableArray options, Promise promise) {
-    if (reactContext.getCurrentActivity() != null) {
-      Map<String, String> approvalDataMap = new HashMap<>();
-      for (Map.Entry<String, Object> entry : approvalData.toHashMap().entrySet()) {
-        approvalDataMap.put(entry.getKey(), entry.getValue().toString());
-      }
-
-      TSAuthentication.approvalWebAuthn(
-          reactContext.getCurrentActivity(),
-          username,
-          approvalDataMap,
-          new TSAuthCallback<TSWebAuthnApprovalResult, TSWebAuthnApprovalError>() {
-            @Override
-            public void success(TSWebAuthnApprovalResult result) {
-              WritableMap map = new WritableNativeMap();
-              map.putString("result", result.result());
-              promise.resolve(map);
-            }
-
-            @Override
-            public void error(TSWebAuthnApprovalError error) {
-              promise.reject("result", error.toString());
-            }
-          });
-    }
+    engine.approvalWebAuthn(reactContext.getCurrentActivity(), username, approvalData.toHashMap())
+      .addListener(new PromiseListener<>(promise));
   }
 
   @ReactMethod
@@ -292,38 +254,8 @@ public class TsAuthenticationModule extends ReactContextBaseJavaModule {
       ReadableMap rawAuthenticationData,
       ReadableArray options,
       Promise promise) {
-    if (reactContext.getCurrentActivity() != null) {
-      Map<String, Object> authDataMap = rawAuthenticationData.toHashMap();
-
-      if (authDataMap == null || authDataMap.isEmpty()) {
-        promise.reject("result", "Invalid authentication data");
-        return;
-      }
-
-      TSWebAuthnAuthenticationData authData = this.convertWebAuthnAuthenticationData(authDataMap);
-
-      if (authData == null) {
-        promise.reject("result", "Error converting authentication data.");
-        return;
-      }
-
-      TSAuthentication.approvalWebAuthn(
-          reactContext.getCurrentActivity(),
-          authData,
-          new TSAuthCallback<TSWebAuthnApprovalResult, TSWebAuthnApprovalError>() {
-            @Override
-            public void success(TSWebAuthnApprovalResult result) {
-              WritableMap map = new WritableNativeMap();
-              map.putString("result", result.result());
-              promise.resolve(map);
-            }
-
-            @Override
-            public void error(TSWebAuthnApprovalError error) {
-              promise.reject("result", error.toString());
-            }
-          });
-    }
+    engine.approvalWebAuthnWithData(reactContext.getCurrentActivity(), rawAuthenticationData.toHashMap())
+      .addListener(new PromiseListener<>(promise));
   }
 
   @ReactMethod
@@ -332,39 +264,8 @@ public class TsAuthenticationModule extends ReactContextBaseJavaModule {
       String username,
       String challenge,
       Promise promise) {
-    if (reactContext.getCurrentActivity() != null) {
-      AppCompatActivity appCompatActivity = getAppCompatActivity();
-      if (appCompatActivity == null) {
-        promise.reject("result", "current activity is not an instance of AppCompatActivity");
-        return;
-      }
-
-      Map<String, String> biometricsString = getBiometricsStrings();
-      BiometricPromptTexts promptTexts = new BiometricPromptTexts(
-          biometricsString.get("titleTxt"),
-          biometricsString.get("subtitleTxt"),
-          biometricsString.get("cancelTxt"));
-
-      TSAuthentication.approvalNativeBiometrics(
-          appCompatActivity,
-          username,
-          challenge,
-          promptTexts,
-          new TSAuthCallback<TSNativeBiometricsApprovalResult, TSNativeBiometricsApprovalError>() {
-            @Override
-            public void success(TSNativeBiometricsApprovalResult result) {
-              WritableMap map = new WritableNativeMap();
-              map.putString("publicKeyId", result.keyId());
-              map.putString("signature", result.signature());
-              promise.resolve(map);
-            }
-
-            @Override
-            public void error(TSNativeBiometricsApprovalError error) {
-              promise.reject("result", error.toString());
-            }
-          });
-    }
+    engine.approvalNativeBiometrics(reactContext.getCurrentActivity(), username, challenge)
+      .addListener(new PromiseListener<>(promise));
   }
 
   // region PIN Authenticator
@@ -372,257 +273,188 @@ public class TsAuthenticationModule extends ReactContextBaseJavaModule {
   @ReactMethod
   @NonNull
   public void registerPinCode(String username, String pinCode, Promise promise) {
-    if (reactContext.getCurrentActivity() != null) {
-
-      AppCompatActivity appCompatActivity = getAppCompatActivity();
-      if (appCompatActivity == null) {
-        promise.reject("result", "current activity is not an instance of AppCompatActivity");
-        return;
-      }
-
-      TSAuthentication.registerPinCode(
-        username,
-        pinCode,
-        new TSAuthCallback<TSPinCodeRegistrationResult, TSPinCodeRegistrationError>() {
-            @Override
-            public void success(TSPinCodeRegistrationResult result) {
-              TSPinCodeRegistrationContext context = result.registrationContext();
-              String contextIdentifier = generateContextIdentifier();
-              storeContextWithIdentifier(contextIdentifier, context);
-
-              WritableMap map = new WritableNativeMap();
-              map.putString("publicKeyId", result.keyId());
-              map.putString("publicKey", result.publicKey());
-              map.putString("keyType", result.keyType());
-              map.putString("contextIdentifier", contextIdentifier);
-
-              promise.resolve(map);
-            }
+    engine.registerPinCode(reactContext.getCurrentActivity(), username, pinCode)
+      .addListener(new PromiseListener<>(promise));
+  }
 
-            @Override
-            public void error(TSPinCodeRegistrationError error) {
-              promise.reject("result", error.toString());
-            }
-          });
+  @ReactMethod
+  @NonNull
+  public void registerPinCodeAndCommit(String username, String pinCode, boolean serverVerified, Promise promise) {
+    if (!serverVerified) {
+      // The condition is fixed before the call; registering would only throw the key away.
+      promise.reject("result", "PIN registration was not verified by the server");
+      return;
     }
+    engine.registerPinCodeAndCommit(reactContext.getCurrentActivity(), username, pinCode, registration -> serverVerified)
+      .addListener(new PromiseListener<>(promise));
   }
 
   @ReactMethod
   @NonNull
   public void commitPinRegistration(String contextIdentifier, Promise promise) {
-    TSPinCodeRegistrationContext context =
-      (TSPinCodeRegistrationContext) getContextWithIdentifier(contextIdentifier);
-
-    if (context == null) {
-      promise.reject("result", "PIN Registration Context not found for the context identifier provided");
-    } else {
-      removeContextWithIdentifier(contextIdentifier);
-      context.commit();
-      promise.resolve(true);
-    }
+    engine.commitPinRegistration(contextIdentifier)
+      .addListener(new PromiseListener<>(promise));
   }
 
   @ReactMethod
   @NonNull
   public void authenticatePinCode(String username, String pinCode, String challenge, Promise promise) {
-    if (reactContext.getCurrentActivity() != null) {
-
-      AppCompatActivity appCompatActivity = getAppCompatActivity();
-      if (appCompatActivity == null) {
-        promise.reject("result", "current activity is not an instance of AppCompatActivity");
-        return;
-      }
-
-      TSAuthentication.authenticatePinCode(username, pinCode, challenge, new TSAuthCallback<TSPinCodeAuthenticationResult, TSPinCodeAuthenticationError>() {
-        @Override
-        public void success(TSPinCodeAuthenticationResult result) {
-          WritableMap map = new WritableNativeMap();
-          map.putString("publicKeyId", result.keyId());
-          map.putString("signature", result.signature());
-          map.putString("challenge", result.challenge());
+    engine.authenticatePinCode(reactContext.getCurrentActivity(), username, pinCode, challenge)
+      .addListener(new PromiseListener<>(promise));
+  }
 
-          promise.resolve(map);
-        }
+  // region Diagnostics
 
-        @Override
-        public void error(TSPinCodeAuthenticationError error) {
-          promise.reject("result", error.toString());
-        }
-      });
-    }
+  @ReactMethod
+  @NonNull
+  public void dumpFlightRecorder(Promise promise) {
+    promise.resolve(Arguments.makeNativeArray(engine.dumpFlightRecorder()));
   }
 
-  // region Context Store
+  // region Authenticator Recommendation
 
-  private String generateContextIdentifier() {
-    return UUID.randomUUID().toString();
+  @ReactMethod
+  @NonNull
+  public void recommendAuthenticator(String username, Promise promise) {
+    promise.resolve(engine.recommendAuthenticator(username));
   }
 
-  private void storeContextWithIdentifier(String identifier, Object context) {
-    contextStore.put(identifier, context);
+  @ReactMethod
+  @NonNull
+  public void getDeviceInfo(Promise promise) {
+    engine.getDeviceInfo(reactContext.getCurrentActivity())
+      .addListener(new PromiseListener<>(promise));
   }
 
-  private void removeContextWithIdentifier(String identifier) {
-    contextStore.remove(identifier);
+  @ReactMethod
+  @NonNull
+  public void isWebAuthnSupported(Promise promise) {
+    promise.resolve(engine.isWebAuthnSupported());
   }
 
-  private Object getContextWithIdentifier(String identifier) {
-    return contextStore.get(identifier);
+  @ReactMethod
+  @NonNull
+  public void getPublicKey(String publicKeyId, Promise promise) {
+    promise.resolve(engine.getPublicKey(publicKeyId));
   }
 
   // region Helpers
 
-  private TSWebAuthnAuthenticationData convertWebAuthnAuthenticationData(
-    java.util.Map<String, Object> rawData) {
+  private static TsAuthenticationException invalidOption(String name) {
+    return new TsAuthenticationException("Invalid option: " + name);
+  }
 
-    String webAuthnSessionId = (String) rawData.get("webauthnSessionId");
-    if (webAuthnSessionId == null || webAuthnSessionId.isEmpty()) {
+  /**
+   * @return the map under the key, or null when the key is missing or null.
+   */
+  @Nullable
+  private static ReadableMap optionalMap(ReadableMap map, String key, String name) throws TsAuthenticationException {
+    if (!map.hasKey(key) || map.getType(key) == ReadableType.Null) {
       return null;
     }
+    if (map.getType(key) != ReadableType.Map) {
+      throw invalidOption(name);
+    }
+    return map.getMap(key);
+  }
 
-    @SuppressWarnings("unchecked")
-    java.util.Map<String, Object> rawCredentialRequestOptions =
-      (java.util.Map<String, Object>) rawData.get("credentialRequestOptions");
-    if (rawCredentialRequestOptions == null) {
+  @Nullable
+  private static String optionalString(ReadableMap map, String key, String name) throws TsAuthenticationException {
+    if (!map.hasKey(key) || map.getType(key) == ReadableType.Null) {
       return null;
     }
-
-    String challenge = (String) rawCredentialRequestOptions.get("challenge");
-    String rawChallenge = (String) rawCredentialRequestOptions.get("rawChallenge");
-    String userVerification = (String) rawCredentialRequestOptions.get("userVerification");
-
-    Object allowCredentialObj = rawCredentialRequestOptions.get("allowCredentials");
-    TSAllowCredentials[] allowCredentials = null;
-    if (allowCredentialObj instanceof List) {
-      List<?> allowCredentialsList = (List<?>) allowCredentialObj;
-      allowCredentials = this.convertAllowCredentials(allowCredentialsList);
+    if (map.getType(key) != ReadableType.String) {
+      throw invalidOption(name);
     }
+    return map.getString(key);
+  }
 
-    String rpId = (String) rawCredentialRequestOptions.get("rpId");
-    Double timeout = (Double) rawCredentialRequestOptions.get("timeout");
-
-    String attestation = (String) rawCredentialRequestOptions.get("attestation");
+  @Nullable
+  private static Boolean optionalBoolean(ReadableMap map, String key, String name, @Nullable Boolean fallback)
+    throws TsAuthenticationException {
+    if (!map.hasKey(key) || map.getType(key) == ReadableType.Null) {
+      return fallback;
+    }
+    if (map.getType(key) != ReadableType.Boolean) {
+      throw invalidOption(name);
+    }
+    return map.getBoolean(key);
+  }
 
-    Object transportsObj = rawCredentialRequestOptions.get("transports");
-    JSONObject transportsJson = null;
-    try {
-      if (transportsObj instanceof List) {
-        List<?> transportsList = (List<?>) transportsObj;
-        JSONArray transportsArray = new JSONArray();
-        for (Object t : transportsList) {
-          if (t instanceof String) {
-            transportsArray.put(t);
-          }
-        }
-        transportsJson = new JSONObject();
-        transportsJson.put("transports", transportsArray);
-      }
-    } catch (Exception e) {
-      transportsJson = null;
+  private static double optionalNumber(ReadableMap map, String key, String name, double fallback)
+    throws TsAuthenticationException {
+    if (!map.hasKey(key) || map.getType(key) == ReadableType.Null) {
+      return fallback;
+    }
+    if (map.getType(key) != ReadableType.Number) {
+      throw invalidOption(name);
+    }
+    double value = map.getDouble(key);
+    if (Double.isNaN(value) || Double.isInfinite(value)) {
+      throw invalidOption(name);
     }
+    return value;
+  }
 
-    TSCredentialRequestOptions credentialRequestOptions = new TSCredentialRequestOptions(
-      challenge != null ? challenge : "",
-      rawChallenge,
-      userVerification,
-      transportsJson,
-      allowCredentials,
-      rpId,
-      timeout,
-      attestation
-    );
-
-    TSWebAuthnAuthenticationData authData = new TSWebAuthnAuthenticationData(
-      webAuthnSessionId,
-      credentialRequestOptions
-    );
-
-    return authData;
-  }
-
-  @SuppressWarnings("unchecked")
-  private TSAllowCredentials[] convertAllowCredentials(List<?> allowCredentialsArray) {
-    List<TSAllowCredentials> result = new ArrayList<>();
-    for (Object item : allowCredentialsArray) {
-      if (item instanceof Map) {
-        Map<String, Object> rawAllowCredential = (Map<String, Object>) item;
-        String[] transports = null;
-        Object transportsObj = rawAllowCredential.get("transports");
-        if (transportsObj instanceof List) {
-          List<?> transportsList = (List<?>) transportsObj;
-          transports = transportsList.stream()
-            .filter(String.class::isInstance)
-            .map(String.class::cast)
-            .toArray(String[]::new);
-        }
-        TSAllowCredentials data = new TSAllowCredentials(
-          (String) rawAllowCredential.get("type"),
-          (String) rawAllowCredential.get("id"),
-          transports
-        );
-        result.add(data);
-      }
+  private static int optionalInt(ReadableMap map, String key, String name, int fallback)
+    throws TsAuthenticationException {
+    double value = optionalNumber(map, key, name, fallback);
+    if (value != Math.rint(value) || value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+      throw invalidOption(name);
     }
-    return result.toArray(new TSAllowCredentials[0]);
+    return (int) value;
   }
 
   @Nullable
-  private AppCompatActivity getAppCompatActivity() {
-    Activity activity = reactContext.getCurrentActivity();
-    if (activity instanceof AppCompatActivity) {
-      return (AppCompatActivity) activity;
-    } else {
-      return null;
+  private static TsAuthenticationEngine.ChallengeReplayPolicy parseChallengeReplayPolicy(@Nullable String policy) {
+    if ("off".equals(policy)) {
+      return TsAuthenticationEngine.ChallengeReplayPolicy.OFF;
+    } else if ("reject".equals(policy)) {
+      return TsAuthenticationEngine.ChallengeReplayPolicy.REJECT;
+    } else if ("returnCached".equals(policy)) {
+      return TsAuthenticationEngine.ChallengeReplayPolicy.RETURN_CACHED;
     }
+    return null;
   }
 
-  private Map<String, String> getBiometricsStrings() {
-    Context context = reactContext;
-
-    String titleTxt = getStringResourceByName(context, "BiometricPromptTitle", "Authenticate with Biometrics");
-    String subtitleTxt = getStringResourceByName(context, "BiometricPromptSubtitle",
-        "Use your device biometrics to authenticate.");
-    String cancelTxt = getStringResourceByName(context, "BiometricPromptCancel", "Cancel");
-
-    Map<String, String> biometricsStrings = new HashMap<>();
-    biometricsStrings.put("titleTxt", titleTxt);
-    biometricsStrings.put("subtitleTxt", subtitleTxt);
-    biometricsStrings.put("cancelTxt", cancelTxt);
-
-    return biometricsStrings;
+  @Nullable
+  private static TsAuthenticationEngine.LatencyDistribution parseLatencyDistribution(@Nullable String distribution) {
+    if ("fixed".equals(distribution)) {
+      return TsAuthenticationEngine.LatencyDistribution.FIXED;
+    } else if ("uniform".equals(distribution)) {
+      return TsAuthenticationEngine.LatencyDistribution.UNIFORM;
+    } else if ("exponential".equals(distribution)) {
+      return TsAuthenticationEngine.LatencyDistribution.EXPONENTIAL;
+    }
+    return null;
   }
 
-  private String getStringResourceByName(Context context, String resourceName, String defaultValue) {
-    int resId = context.getResources().getIdentifier(resourceName, "string", context.getPackageName());
-    return resId != 0 ? context.getString(resId) : defaultValue;
-  }
+  /**
+   * Settles a promise with an engine result, converting maps and lists to their bridge types.
+   */
+  private static class PromiseListener<T> implements TsAuthenticationEngine.Listener<T> {
 
-  @ReactMethod
-  @NonNull
-  public void getDeviceInfo(Promise promise) {
-    if (reactContext.getCurrentActivity() != null) {
-      TSAuthentication.getDeviceInfo(
-          reactContext.getCurrentActivity(),
-          new TSAuthCallback<DeviceInfo, TSDeviceInfoError>() {
-            @Override
-            public void success(DeviceInfo deviceInfo) {
-              WritableMap map = new WritableNativeMap();
-              map.putString("publicKeyId", deviceInfo.getPublicKeyId());
-              map.putString("publicKey", deviceInfo.getPublicKey());
-              promise.resolve(map);
-            }
+    private final Promise promise;
 
-            @Override
-            public void error(TSDeviceInfoError tsDeviceInfoError) {
-              promise.reject("result", tsDeviceInfoError.toString());
-            }
-          });
+    PromiseListener(Promise promise) {
+      this.promise = promise;
     }
-  }
 
-  @ReactMethod
-  @NonNull
-  public void isWebAuthnSupported(Promise promise) {
-    promise.resolve(TSAuthentication.isWebAuthnSupported());
+    @Override
+    @SuppressWarnings("unchecked")
+    public void onSuccess(@Nullable T result) {
+      if (result instanceof Map) {
+        promise.resolve(Arguments.makeNativeMap((Map<String, Object>) result));
+      } else if (result instanceof List) {
+        promise.resolve(Arguments.makeNativeArray((List<?>) result));
+      } else {
+        promise.resolve(result);
+      }
+    }
+
+    @Override
+    public void onError(@NonNull TsAuthenticationException error) {
+      promise.reject(error.getCode(), error.getMessage());
+    }
   }
 }
@@ -0,0 +1,86 @@
+package com.tsauthentication;
+
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+
+/**
+ * Salted hash of usernames for the flight recorder and the authenticator statistics. Usernames
+ * are never stored; only the first 64 bits of a SHA-256 over a random per-install salt and the
+ * username. Support can correlate the operations of one user within a trace, but a list of
+ * candidate usernames is not enough to tell who the user is.
+ *
+ * The salt is kept next to the authenticator statistics, so the registrations they persist are
+ * found again after an app restart.
+ */
+class UsernameHasher {
+
+  private static final String TAG = "TSAuthentication";
+  private static final String FILE_NAME = "ts_username_salt.bin";
+  private static final int SALT_LENGTH = 16;
+
+  private final byte[] salt;
+
+  UsernameHasher(File directory) {
+    this(loadSalt(new File(directory, FILE_NAME)));
+  }
+
+  UsernameHasher(byte[] salt) {
+    this.salt = salt.clone();
+  }
+
+  /**
+   * @return the salted hash of the username, or 0 when there is none.
+   */
+  long hash(@Nullable String username) {
+    if (username == null) {
+      return 0;
+    }
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+    digest.update(salt);
+    byte[] hash = digest.digest(username.getBytes(StandardCharsets.UTF_8));
+
+    long value = 0;
+    for (int i = 0; i < 8; i++) {
+      value = (value << 8) | (hash[i] & 0xff);
+    }
+    return value;
+  }
+
+  // Read once, when the engine is created and before anything is hashed. A salt that cannot be
+  // saved still protects this session; its hashes just do not match the persisted ones next time.
+  private static byte[] loadSalt(File file) {
+    byte[] salt = new byte[SALT_LENGTH];
+    if (file.length() == SALT_LENGTH) {
+      try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+        in.readFully(salt);
+        return salt;
+      } catch (IOException e) {
+        Log.w(TAG, "Failed to load username salt", e);
+      }
+    }
+
+    new SecureRandom().nextBytes(salt);
+    try (FileOutputStream out = new FileOutputStream(file)) {
+      out.write(salt);
+    } catch (IOException e) {
+      Log.w(TAG, "Failed to save username salt", e);
+    }
+    return salt;
+  }
+}
@@ -0,0 +1,61 @@
+package com.tsauthentication;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class AuthenticatorStatsTest {
+
+  private static final String USERNAME = "alice";
+
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  private AuthenticatorStats stats;
+
+  @Before
+  public void setUp() throws Exception {
+    stats = new AuthenticatorStats(folder.newFolder(), new UsernameHasher(new byte[16]));
+    stats.recordRegistration(AuthenticatorStats.AUTHENTICATOR_PIN_CODE, USERNAME);
+    stats.recordRegistration(AuthenticatorStats.AUTHENTICATOR_NATIVE_BIOMETRICS, USERNAME);
+  }
+
+  @Test
+  public void prefersFasterReliableAuthenticator() {
+    record(AuthenticatorStats.AUTHENTICATOR_PIN_CODE, 10, 800, true);
+    record(AuthenticatorStats.AUTHENTICATOR_NATIVE_BIOMETRICS, 10, 300, true);
+
+    assertEquals("nativeBiometrics", stats.recommend(USERNAME));
+  }
+
+  @Test
+  public void earlyFailuresFadeOnceTheAuthenticatorWorks() {
+    record(AuthenticatorStats.AUTHENTICATOR_PIN_CODE, 10, 800, true);
+    record(AuthenticatorStats.AUTHENTICATOR_NATIVE_BIOMETRICS, 50, 300, false);
+    assertEquals("pinCode", stats.recommend(USERNAME));
+
+    record(AuthenticatorStats.AUTHENTICATOR_NATIVE_BIOMETRICS, 20, 300, true);
+    assertEquals("nativeBiometrics", stats.recommend(USERNAME));
+  }
+
+  @Test
+  public void recentFailuresMakeAnAuthenticatorUnreliable() {
+    record(AuthenticatorStats.AUTHENTICATOR_PIN_CODE, 10, 800, true);
+    record(AuthenticatorStats.AUTHENTICATOR_NATIVE_BIOMETRICS, 1000, 300, true);
+    record(AuthenticatorStats.AUTHENTICATOR_NATIVE_BIOMETRICS, 5, 300, false);
+
+    assertEquals("pinCode", stats.recommend(USERNAME));
+  }
+
+  private void record(int authenticator, int count, long elapsedMs, boolean success) {
+    for (int i = 0; i < count; i++) {
+      stats.recordAttempt(authenticator, USERNAME, elapsedMs, success);
+    }
+  }
+}
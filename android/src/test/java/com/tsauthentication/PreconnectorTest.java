@@ -0,0 +1,213 @@
+package com.tsauthentication;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManagerFactory;
+
+/**
+ * Runs {@link Preconnector} against local stand-ins for the base URL: TLS servers with a
+ * self-signed certificate, with and without session resumption, and a server that accepts the
+ * connection but never answers.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class PreconnectorTest {
+
+  private static final char[] PASSWORD = "changeit".toCharArray();
+  private static final int TIMEOUT_MS = 500;
+
+  private KeyManagerFactory keyManagers;
+  private SSLContext serverContext;
+  private SSLSocketFactory clientSocketFactory;
+  private final List<ServerSocket> servers = new ArrayList<>();
+
+  @Before
+  public void setUp() throws Exception {
+    KeyStore keyStore = KeyStore.getInstance("PKCS12");
+    try (InputStream in = getClass().getClassLoader().getResourceAsStream("preconnector_test.p12")) {
+      keyStore.load(in, PASSWORD);
+    }
+
+    keyManagers = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+    keyManagers.init(keyStore, PASSWORD);
+    serverContext = newServerContext();
+
+    TrustManagerFactory trustManagers = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+    trustManagers.init(keyStore);
+    SSLContext clientContext = SSLContext.getInstance("TLS");
+    clientContext.init(null, trustManagers.getTrustManagers(), null);
+    clientSocketFactory = clientContext.getSocketFactory();
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    for (ServerSocket server : servers) {
+      server.close();
+    }
+  }
+
+  @Test
+  public void reportsColdConnectionPhasesAndResumedSession() throws Exception {
+    int port = startTlsServer("TLSv1.2");
+    Preconnector preconnector = new Preconnector(clientSocketFactory, TIMEOUT_MS);
+
+    Map<String, Object> report = preconnector.preconnect("https://localhost:" + port + "/").get(10, TimeUnit.SECONDS);
+
+    assertEquals("localhost", report.get("host"));
+    assertEquals("TLSv1.2", report.get("protocol"));
+    assertEquals(true, report.get("resumed"));
+    double dnsMs = (Double) report.get("dnsMs");
+    double tcpMs = (Double) report.get("tcpMs");
+    double tlsMs = (Double) report.get("tlsMs");
+    double coldMs = (Double) report.get("coldMs");
+    double warmMs = (Double) report.get("warmMs");
+    double savedMs = (Double) report.get("savedMs");
+    assertTrue(dnsMs >= 0 && tcpMs >= 0 && tlsMs >= 0 && warmMs >= 0);
+    assertEquals(dnsMs + tcpMs + tlsMs, coldMs, 0);
+    assertEquals(Math.max(0, coldMs - warmMs), savedMs, 0);
+  }
+
+  @Test
+  public void reportsSessionNotResumedWhenServerRefusesResumption() throws Exception {
+    int port = startNonResumingTlsServer();
+
+    Map<String, Object> report = new Preconnector(clientSocketFactory, TIMEOUT_MS)
+      .preconnect("https://localhost:" + port).get(10, TimeUnit.SECONDS);
+
+    assertEquals(false, report.get("resumed"));
+  }
+
+  @Test
+  public void reportsTls13SessionAsNotResumed() throws Exception {
+    int port = startTlsServer("TLSv1.3");
+
+    Map<String, Object> report = new Preconnector(clientSocketFactory, TIMEOUT_MS)
+      .preconnect("https://localhost:" + port).get(10, TimeUnit.SECONDS);
+
+    assertEquals("TLSv1.3", report.get("protocol"));
+    assertEquals(false, report.get("resumed"));
+  }
+
+  @Test
+  public void stalledHandshakeTimesOutWithoutBlockingLaterPreconnects() throws Exception {
+    int stalledPort = startSilentServer();
+    int tlsPort = startTlsServer("TLSv1.2");
+    Preconnector preconnector = new Preconnector(clientSocketFactory, TIMEOUT_MS);
+
+    TsAuthenticationFuture<Map<String, Object>> stalled = preconnector.preconnect("https://localhost:" + stalledPort);
+    TsAuthenticationFuture<Map<String, Object>> next = preconnector.preconnect("https://localhost:" + tlsPort);
+
+    try {
+      stalled.get(10, TimeUnit.SECONDS);
+      fail("Expected the stalled handshake to time out");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause().getMessage().startsWith("Preconnect failed"));
+    }
+    assertEquals("localhost", next.get(10, TimeUnit.SECONDS).get("host"));
+  }
+
+  @Test
+  public void rejectsNonHttpsBaseUrl() throws Exception {
+    TsAuthenticationFuture<Map<String, Object>> future =
+      new Preconnector(clientSocketFactory, TIMEOUT_MS).preconnect("http://localhost/");
+
+    assertTrue(future.isDone());
+    try {
+      future.get();
+      fail("Expected an invalid base URL");
+    } catch (ExecutionException e) {
+      assertEquals("Invalid base URL: http://localhost/", e.getCause().getMessage());
+    }
+  }
+
+  // region Servers
+
+  private int startTlsServer(String protocol) throws IOException {
+    SSLServerSocket server = (SSLServerSocket) serverContext.getServerSocketFactory()
+      .createServerSocket(0, 50, InetAddress.getByName("localhost"));
+    server.setEnabledProtocols(new String[] {protocol});
+    servers.add(server);
+    acceptInBackground(server, socket -> {
+      ((SSLSocket) socket).startHandshake();
+      socket.close();
+    });
+    return server.getLocalPort();
+  }
+
+  // Every connection gets a server context of its own, with an empty session cache.
+  private int startNonResumingTlsServer() throws IOException {
+    ServerSocket server = new ServerSocket(0, 50, InetAddress.getByName("localhost"));
+    servers.add(server);
+    acceptInBackground(server, socket -> {
+      SSLSocket sslSocket = (SSLSocket) newServerContext().getSocketFactory()
+        .createSocket(socket, null, socket.getPort(), true);
+      sslSocket.setUseClientMode(false);
+      sslSocket.setEnabledProtocols(new String[] {"TLSv1.2"});
+      sslSocket.startHandshake();
+      sslSocket.close();
+    });
+    return server.getLocalPort();
+  }
+
+  private SSLContext newServerContext() throws IOException {
+    try {
+      SSLContext context = SSLContext.getInstance("TLS");
+      context.init(keyManagers.getKeyManagers(), null, null);
+      return context;
+    } catch (GeneralSecurityException e) {
+      throw new IOException(e);
+    }
+  }
+
+  private int startSilentServer() throws IOException {
+    ServerSocket server = new ServerSocket(0, 50, InetAddress.getByName("localhost"));
+    servers.add(server);
+    // Accepted sockets stay open and unanswered until the server is closed.
+    List<Socket> accepted = new ArrayList<>();
+    acceptInBackground(server, accepted::add);
+    return server.getLocalPort();
+  }
+
+  private interface Handler {
+    void handle(Socket socket) throws IOException;
+  }
+
+  private static void acceptInBackground(ServerSocket server, Handler handler) {
+    Thread thread = new Thread(() -> {
+      while (!server.isClosed()) {
+        try {
+          handler.handle(server.accept());
+        } catch (IOException e) {
+          // Closed by tearDown, or a client that gave up; keep accepting until closed.
+        }
+      }
+    });
+    thread.setDaemon(true);
+    thread.start();
+  }
+}
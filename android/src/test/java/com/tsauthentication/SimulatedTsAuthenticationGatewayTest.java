@@ -0,0 +1,121 @@
+package com.tsauthentication;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import androidx.annotation.NonNull;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+@RunWith(RobolectricTestRunner.class)
+public class SimulatedTsAuthenticationGatewayTest {
+
+  private static final int DRAWS = 10_000;
+
+  private final List<SimulatedTsAuthenticationGateway> gateways = new ArrayList<>();
+
+  @After
+  public void tearDown() {
+    for (SimulatedTsAuthenticationGateway gateway : gateways) {
+      gateway.shutdown();
+    }
+  }
+
+  @Test
+  public void sameSeedDrawsSameLatenciesAndErrors() {
+    SimulatedTsAuthenticationGateway first = gateway(42, TsAuthenticationEngine.LatencyDistribution.EXPONENTIAL);
+    SimulatedTsAuthenticationGateway second = gateway(42, TsAuthenticationEngine.LatencyDistribution.EXPONENTIAL);
+
+    for (long sequence = 0; sequence < DRAWS; sequence++) {
+      SimulatedTsAuthenticationGateway.Draw expected = first.draw(sequence);
+      SimulatedTsAuthenticationGateway.Draw actual = second.draw(sequence);
+      assertEquals(expected.latencyMs, actual.latencyMs);
+      assertEquals(expected.errorType, actual.errorType);
+    }
+  }
+
+  @Test
+  public void differentSeedsDrawDifferentLatencies() {
+    SimulatedTsAuthenticationGateway first = gateway(1, TsAuthenticationEngine.LatencyDistribution.UNIFORM);
+    SimulatedTsAuthenticationGateway second = gateway(2, TsAuthenticationEngine.LatencyDistribution.UNIFORM);
+
+    assertNotEquals(latencies(first), latencies(second));
+  }
+
+  @Test
+  public void drawsStayWithinBoundsAtConfiguredErrorRate() {
+    for (TsAuthenticationEngine.LatencyDistribution distribution : TsAuthenticationEngine.LatencyDistribution.values()) {
+      SimulatedTsAuthenticationGateway gateway = gateway(7, distribution);
+      int errors = 0;
+      for (long sequence = 0; sequence < DRAWS; sequence++) {
+        SimulatedTsAuthenticationGateway.Draw draw = gateway.draw(sequence);
+        assertTrue(draw.latencyMs >= 10 && draw.latencyMs <= 200);
+        if (draw.errorType != null) {
+          assertEquals("networkError", draw.errorType);
+          errors++;
+        }
+      }
+      assertEquals(0.1, (double) errors / DRAWS, 0.02);
+    }
+  }
+
+  @Test
+  public void sameSeedAndCallOrderGiveSameResults() throws InterruptedException {
+    assertEquals(
+      registrations(gateway(42, TsAuthenticationEngine.LatencyDistribution.FIXED)),
+      registrations(gateway(42, TsAuthenticationEngine.LatencyDistribution.FIXED)));
+  }
+
+  private SimulatedTsAuthenticationGateway gateway(long seed, TsAuthenticationEngine.LatencyDistribution distribution) {
+    Map<String, Double> errorRates = new LinkedHashMap<>();
+    errorRates.put("networkError", 0.1);
+    SimulatedTsAuthenticationGateway gateway =
+      new SimulatedTsAuthenticationGateway(seed, distribution, 10, 50, 200, errorRates);
+    gateways.add(gateway);
+    return gateway;
+  }
+
+  private static List<Long> latencies(SimulatedTsAuthenticationGateway gateway) {
+    List<Long> latencies = new ArrayList<>();
+    for (long sequence = 0; sequence < 100; sequence++) {
+      latencies.add(gateway.draw(sequence).latencyMs);
+    }
+    return latencies;
+  }
+
+  // Calls one at a time, so the call order is the same for every gateway.
+  private static List<String> registrations(SimulatedTsAuthenticationGateway gateway) throws InterruptedException {
+    List<String> outcomes = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      CountDownLatch settled = new CountDownLatch(1);
+      String[] outcome = new String[1];
+      gateway.registerNativeBiometrics(null, "user" + i, new TsAuthenticationGateway.Callback<Map<String, Object>>() {
+        @Override
+        public void success(@NonNull Map<String, Object> result) {
+          outcome[0] = result.get("publicKeyId") + ":" + result.get("publicKey");
+          settled.countDown();
+        }
+
+        @Override
+        public void error(@NonNull String errorType, @NonNull String message) {
+          outcome[0] = message;
+          settled.countDown();
+        }
+      });
+      assertTrue(settled.await(5, TimeUnit.SECONDS));
+      outcomes.add(outcome[0]);
+    }
+    return outcomes;
+  }
+}
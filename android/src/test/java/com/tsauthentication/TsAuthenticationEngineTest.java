@@ -0,0 +1,140 @@
+package com.tsauthentication;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import android.app.Activity;
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.appcompat.app.AppCompatActivity;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+@RunWith(RobolectricTestRunner.class)
+public class TsAuthenticationEngineTest {
+
+  private static final long TIMEOUT_S = 10;
+
+  private Context application;
+  private TsAuthenticationEngine engine;
+  private Activity activity;
+
+  @Before
+  public void setUp() {
+    application = RuntimeEnvironment.getApplication();
+    engine = new TsAuthenticationEngine(application);
+    activity = Robolectric.buildActivity(AppCompatActivity.class).get();
+  }
+
+  @After
+  public void tearDown() {
+    engine.disableSimulation();
+  }
+
+  @Test
+  public void returnCachedSettlesBiometricRepeatWithEarlierResult() throws Exception {
+    simulate(Collections.emptyMap());
+    engine.setChallengeReplayPolicy(TsAuthenticationEngine.ChallengeReplayPolicy.RETURN_CACHED, 60_000, 16);
+
+    TsAuthenticationFuture<Map<String, Object>> first = engine.authenticateNativeBiometrics(activity, "alice", "c1");
+    TsAuthenticationFuture<Map<String, Object>> repeat = engine.authenticateNativeBiometrics(activity, "alice", "c1");
+
+    assertSame(first, repeat);
+    assertEquals(first.get(TIMEOUT_S, TimeUnit.SECONDS), repeat.get(TIMEOUT_S, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void returnCachedRejectsPinRepeatInsteadOfSkippingThePinCheck() throws Exception {
+    simulate(Collections.emptyMap());
+    engine.setChallengeReplayPolicy(TsAuthenticationEngine.ChallengeReplayPolicy.RETURN_CACHED, 60_000, 16);
+
+    TsAuthenticationFuture<Map<String, Object>> first = engine.authenticatePinCode(activity, "alice", "1234", "c1");
+    TsAuthenticationFuture<Map<String, Object>> repeat = engine.authenticatePinCode(activity, "alice", "0000", "c1");
+
+    assertEquals(TsAuthenticationException.REPLAYED_CHALLENGE_CODE, failure(repeat).getCode());
+    first.get(TIMEOUT_S, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void cachedRepeatRecordsTheEarlierFailureCategory() throws Exception {
+    simulate(Collections.singletonMap("networkError", 1.0));
+    engine.setChallengeReplayPolicy(TsAuthenticationEngine.ChallengeReplayPolicy.RETURN_CACHED, 60_000, 16);
+
+    TsAuthenticationFuture<Map<String, Object>> first = engine.authenticateNativeBiometrics(activity, "alice", "c1");
+    engine.authenticateNativeBiometrics(activity, "alice", "c1");
+    // Listeners run in the order they were added, so this one runs after the repeat is recorded.
+    CountDownLatch settled = new CountDownLatch(1);
+    first.addListener(new TsAuthenticationEngine.Listener<Map<String, Object>>() {
+      @Override
+      public void onSuccess(@Nullable Map<String, Object> result) {
+        settled.countDown();
+      }
+
+      @Override
+      public void onError(@NonNull TsAuthenticationException error) {
+        settled.countDown();
+      }
+    });
+    assertTrue(settled.await(TIMEOUT_S, TimeUnit.SECONDS));
+
+    List<Map<String, Object>> entries = engine.dumpFlightRecorder();
+    assertEquals(2, entries.size());
+    for (Map<String, Object> entry : entries) {
+      assertEquals("network", entry.get("errorCategory"));
+    }
+  }
+
+  @Test
+  public void simulatedRunLeavesPersistedStatsUntouched() throws Exception {
+    File file = new File(application.getFilesDir(), AuthenticatorStats.FILE_NAME);
+    byte[] before = file.exists() ? Files.readAllBytes(file.toPath()) : null;
+
+    simulate(Collections.emptyMap());
+    engine.registerNativeBiometrics(activity, "alice").get(TIMEOUT_S, TimeUnit.SECONDS);
+    engine.authenticateNativeBiometrics(activity, "alice", "c1").get(TIMEOUT_S, TimeUnit.SECONDS);
+    Map<String, Object> registration = engine.registerPinCode(activity, "alice", "1234").get(TIMEOUT_S, TimeUnit.SECONDS);
+    engine.commitPinRegistration((String) registration.get("contextIdentifier")).get(TIMEOUT_S, TimeUnit.SECONDS);
+    assertNotNull(engine.recommendAuthenticator("alice"));
+
+    engine.disableSimulation();
+    assertNull(engine.recommendAuthenticator("alice"));
+    assertArrayEquals(before, file.exists() ? Files.readAllBytes(file.toPath()) : null);
+  }
+
+  private void simulate(Map<String, Double> errorRates) {
+    engine.enableSimulation(1, TsAuthenticationEngine.LatencyDistribution.FIXED, 50, 50, 50, errorRates);
+  }
+
+  private static TsAuthenticationException failure(Future<?> future) throws Exception {
+    try {
+      future.get(TIMEOUT_S, TimeUnit.SECONDS);
+    } catch (ExecutionException e) {
+      return (TsAuthenticationException) e.getCause();
+    }
+    fail("Expected the operation to fail");
+    return null;
+  }
+}
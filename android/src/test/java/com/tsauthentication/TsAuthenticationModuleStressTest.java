@@ -0,0 +1,569 @@
+package com.tsauthentication;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.RETURNS_DEFAULTS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.when;
+
+import android.app.Activity;
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.appcompat.app.AppCompatActivity;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.transmit.authentication.biometrics.BiometricPromptTexts;
+import com.transmit.authentication.network.startauth.TSWebAuthnAuthenticationData;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.MockedStatic;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fires interleaved register, commit and authenticate calls at one {@link TsAuthenticationModule}
+ * from several threads, against the simulated gateway or a stub. The current activity changes
+ * between calls. The suite checks that every promise settles exactly once, with the rejection the
+ * activity of its own call calls for, that no PIN registration context is left behind and that
+ * nothing throws.
+ *
+ * Promises settle on threads where {@link Arguments} is mocked, because the bridge types it builds
+ * need the React Native native libraries.
+ *
+ * Fails when throughput drops below {@code -Dstress.minOpsPerSecond} (200 by default).
+ */
+@RunWith(RobolectricTestRunner.class)
+public class TsAuthenticationModuleStressTest {
+
+  private static final int THREADS = 8;
+  private static final int OPERATIONS = 4_000;
+  private static final long TIMEOUT_MS = 60_000;
+  private static final double MIN_OPS_PER_SECOND =
+    Double.parseDouble(System.getProperty("stress.minOpsPerSecond", "200"));
+
+  private static final String NO_ACTIVITY = "No current activity";
+  private static final String NOT_APP_COMPAT = "current activity is not an instance of AppCompatActivity";
+
+  private TsAuthenticationEngine engine;
+  private TsAuthenticationModule module;
+  private Activity appCompatActivity;
+  private Activity plainActivity;
+  // Each calling thread swaps its activity between calls; the module must read it per call.
+  private final ThreadLocal<Activity> currentActivity = new ThreadLocal<>();
+  // What the mocked Arguments was last asked to convert on this thread.
+  private final ThreadLocal<Object> converted = new ThreadLocal<>();
+
+  private final ExecutorService callbackExecutor = Executors.newFixedThreadPool(4, this::newBridgeThread);
+  @Nullable private SimulatedTsAuthenticationGateway simulatedGateway;
+
+  private final Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
+  private final Queue<RecordingPromise> promises = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger outstanding = new AtomicInteger();
+  private final AtomicLong operations = new AtomicLong();
+
+  @Before
+  public void setUp() {
+    Context context = RuntimeEnvironment.getApplication();
+    engine = new TsAuthenticationEngine(context);
+    ReactApplicationContext reactContext = mock(ReactApplicationContext.class);
+    when(reactContext.getCurrentActivity()).thenAnswer(invocation -> currentActivity.get());
+    module = new TsAuthenticationModule(reactContext, engine);
+    appCompatActivity = Robolectric.buildActivity(AppCompatActivity.class).get();
+    plainActivity = Robolectric.buildActivity(Activity.class).get();
+  }
+
+  @After
+  public void tearDown() {
+    if (simulatedGateway != null) {
+      simulatedGateway.shutdown();
+    }
+    callbackExecutor.shutdown();
+  }
+
+  @Test
+  public void interleavedCallsSettleEachPromiseOnceWithoutLeaks() throws Exception {
+    Map<String, Double> errorRates = new LinkedHashMap<>();
+    errorRates.put("networkError", 0.1);
+    errorRates.put("userCanceled", 0.05);
+    simulatedGateway = new SimulatedTsAuthenticationGateway(
+      1, TsAuthenticationEngine.LatencyDistribution.UNIFORM, 0, 1, 2, errorRates);
+    engine.setGateway(new BridgeThreadGateway(simulatedGateway));
+    engine.setChallengeReplayPolicy(TsAuthenticationEngine.ChallengeReplayPolicy.REJECT, 60_000, 16);
+
+    long startedAt = System.nanoTime();
+    runConcurrently(OPERATIONS / THREADS, this::randomCall);
+    awaitSettled();
+    double seconds = (System.nanoTime() - startedAt) / 1e9;
+
+    assertInvariants();
+    double opsPerSecond = operations.get() / seconds;
+    System.out.printf("TsAuthenticationModule stress: %d calls in %.2fs, %.0f calls/s%n",
+      operations.get(), seconds, opsPerSecond);
+    assertTrue("Throughput " + opsPerSecond + " calls/s is below " + MIN_OPS_PER_SECOND,
+      opsPerSecond >= MIN_OPS_PER_SECOND);
+  }
+
+  @Test
+  public void duplicateSdkCallbacksDoNotLeakContexts() throws Exception {
+    engine.setGateway(new DuplicatingGateway(callbackExecutor));
+
+    Queue<String> contextIdentifiers = new ConcurrentLinkedQueue<>();
+    runConcurrently(OPERATIONS / THREADS, random -> {
+      currentActivity.set(appCompatActivity);
+      module.registerPinCode("user" + random.nextInt(32), "1234", track(null, result ->
+        contextIdentifiers.add((String) ((Map<?, ?>) result).get("contextIdentifier"))));
+    });
+    awaitSettled();
+
+    assertEquals(OPERATIONS, contextIdentifiers.size());
+    assertEquals(OPERATIONS, engine.pendingPinRegistrationCount());
+
+    runConcurrently(1, random -> {
+      String contextIdentifier;
+      while ((contextIdentifier = contextIdentifiers.poll()) != null) {
+        module.commitPinRegistration(contextIdentifier, track(null, null));
+      }
+    });
+    awaitSettled();
+
+    assertInvariants();
+  }
+
+  // region Calls
+
+  private void randomCall(Random random) {
+    String username = "user" + random.nextInt(32);
+    // A missing activity stands in for the React activity going away between calls.
+    int pick = random.nextInt(20);
+    Activity activity = pick == 0 ? null : pick == 1 ? plainActivity : appCompatActivity;
+    currentActivity.set(activity);
+    String activityRejection = activity == null ? NO_ACTIVITY : activity == plainActivity ? NOT_APP_COMPAT : null;
+
+    switch (random.nextInt(6)) {
+      case 0:
+        module.registerPinCode(username, "1234", track(activityRejection, result -> {
+          // Commit from the callback thread, racing the other calls.
+          String contextIdentifier = (String) ((Map<?, ?>) result).get("contextIdentifier");
+          module.commitPinRegistration(contextIdentifier, track(null, null));
+        }));
+        break;
+      case 1:
+        boolean serverVerified = random.nextBoolean();
+        module.registerPinCodeAndCommit(username, "1234", serverVerified,
+          track(serverVerified ? activityRejection : "PIN registration was not verified by the server", null));
+        break;
+      case 2:
+        module.authenticatePinCode(username, "1234", "challenge" + random.nextInt(64), track(activityRejection, null));
+        break;
+      case 3:
+        // Any activity will do for biometric registration.
+        module.registerNativeBiometrics(username, track(activity == null ? NO_ACTIVITY : null, null));
+        break;
+      case 4:
+        module.authenticateNativeBiometrics(username, "challenge" + random.nextInt(64), track(activityRejection, null));
+        break;
+      default:
+        module.commitPinRegistration("unknown-" + random.nextInt(), track(null, null));
+        module.dumpFlightRecorder(track(null, null));
+        module.recommendAuthenticator(username, track(null, null));
+        break;
+    }
+  }
+
+  private interface Call {
+    void run(Random random) throws Exception;
+  }
+
+  private interface SuccessHandler {
+    void onSuccess(@Nullable Object result);
+  }
+
+  private void runConcurrently(int iterations, Call call) throws InterruptedException {
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS, this::newBridgeThread);
+    CountDownLatch start = new CountDownLatch(1);
+    for (int thread = 0; thread < THREADS; thread++) {
+      long seed = thread;
+      executor.execute(() -> {
+        Random random = new Random(seed);
+        try {
+          start.await();
+          for (int i = 0; i < iterations; i++) {
+            call.run(random);
+          }
+        } catch (Throwable t) {
+          failures.add(t);
+        }
+      });
+    }
+    start.countDown();
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+  }
+
+  /**
+   * @param expectedRejection message the promise must be rejected with, or null when either
+   *                          outcome is fine.
+   * @param handler run with the resolved value the first time the promise resolves.
+   */
+  private Promise track(@Nullable String expectedRejection, @Nullable SuccessHandler handler) {
+    RecordingPromise recording = new RecordingPromise(expectedRejection, handler);
+    promises.add(recording);
+    operations.incrementAndGet();
+    outstanding.incrementAndGet();
+    return mock(Promise.class, recording);
+  }
+
+  private void awaitSettled() throws InterruptedException {
+    long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+    while (outstanding.get() > 0 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    // Leave time for a late second settlement to show up.
+    Thread.sleep(50);
+  }
+
+  private void assertInvariants() {
+    assertEquals(Collections.emptyList(), new ArrayList<>(failures));
+    assertEquals(0, outstanding.get());
+    for (RecordingPromise promise : promises) {
+      assertEquals(1, promise.settlements.get());
+      if (promise.expectedRejection != null) {
+        assertEquals(promise.expectedRejection, promise.rejection);
+      }
+    }
+    assertEquals(0, engine.pendingPinRegistrationCount());
+  }
+
+  /**
+   * Counts how often a promise is resolved or rejected, and keeps what the first settlement
+   * carried. A resolved map or list is read back from the mocked {@link Arguments}.
+   */
+  private final class RecordingPromise implements Answer<Object> {
+
+    @Nullable final String expectedRejection;
+    @Nullable private final SuccessHandler handler;
+    final AtomicInteger settlements = new AtomicInteger();
+    @Nullable volatile String rejection;
+
+    RecordingPromise(@Nullable String expectedRejection, @Nullable SuccessHandler handler) {
+      this.expectedRejection = expectedRejection;
+      this.handler = handler;
+    }
+
+    @Override
+    public Object answer(InvocationOnMock invocation) throws Throwable {
+      String method = invocation.getMethod().getName();
+      if (!method.equals("resolve") && !method.equals("reject")) {
+        return RETURNS_DEFAULTS.answer(invocation);
+      }
+
+      Object value = converted.get();
+      converted.remove();
+      if (settlements.incrementAndGet() > 1) {
+        return null;
+      }
+      try {
+        if (method.equals("reject")) {
+          rejection = invocation.getArguments().length > 1 ? String.valueOf(invocation.getArguments()[1]) : null;
+        } else if (handler != null) {
+          handler.onSuccess(value != null ? value : invocation.getArgument(0));
+        }
+      } catch (Throwable t) {
+        failures.add(t);
+      } finally {
+        // Decremented after the handler, so chained calls are awaited.
+        outstanding.decrementAndGet();
+      }
+      return null;
+    }
+  }
+
+  // region Bridge threads
+
+  /**
+   * A thread whose {@link Arguments} conversions are recorded for {@link RecordingPromise} instead
+   * of building native bridge types. Static mocks only apply to the thread that opens them.
+   */
+  private Thread newBridgeThread(Runnable runnable) {
+    Thread thread = new Thread(() -> {
+      try (MockedStatic<Arguments> arguments = mockStatic(Arguments.class)) {
+        arguments.when(() -> Arguments.makeNativeMap(anyMap())).thenAnswer(this::convert);
+        arguments.when(() -> Arguments.makeNativeArray(anyList())).thenAnswer(this::convert);
+        runnable.run();
+      }
+    });
+    thread.setDaemon(true);
+    return thread;
+  }
+
+  @Nullable
+  private Object convert(InvocationOnMock invocation) {
+    converted.set(invocation.getArgument(0));
+    return null;
+  }
+
+  // region Stub gateways
+
+  /**
+   * Hands every callback of another gateway to the bridge threads, as the SDK answers on threads
+   * of its own.
+   */
+  private final class BridgeThreadGateway implements TsAuthenticationGateway {
+
+    private final TsAuthenticationGateway delegate;
+
+    BridgeThreadGateway(TsAuthenticationGateway delegate) {
+      this.delegate = delegate;
+    }
+
+    private <T> Callback<T> onBridgeThread(Callback<T> callback) {
+      return new Callback<T>() {
+        @Override
+        public void success(@NonNull T result) {
+          callbackExecutor.execute(() -> callback.success(result));
+        }
+
+        @Override
+        public void error(@NonNull String errorType, @NonNull String message) {
+          callbackExecutor.execute(() -> callback.error(errorType, message));
+        }
+      };
+    }
+
+    @Override
+    public void initializeSDK(Context context) {
+      delegate.initializeSDK(context);
+    }
+
+    @Override
+    public void initialize(Context context, String clientId) {
+      delegate.initialize(context, clientId);
+    }
+
+    @Override
+    public boolean isWebAuthnSupported() {
+      return delegate.isWebAuthnSupported();
+    }
+
+    @Override
+    public void registerWebAuthn(Activity activity, String username, String displayName, Callback<Map<String, Object>> callback) {
+      delegate.registerWebAuthn(activity, username, displayName, onBridgeThread(callback));
+    }
+
+    @Override
+    public void authenticateWebAuthn(Activity activity, String username, Callback<Map<String, Object>> callback) {
+      delegate.authenticateWebAuthn(activity, username, onBridgeThread(callback));
+    }
+
+    @Override
+    public void signTransactionWebAuthn(Activity activity, String username, Callback<Map<String, Object>> callback) {
+      delegate.signTransactionWebAuthn(activity, username, onBridgeThread(callback));
+    }
+
+    @Override
+    public void registerNativeBiometrics(Activity activity, String username, Callback<Map<String, Object>> callback) {
+      delegate.registerNativeBiometrics(activity, username, onBridgeThread(callback));
+    }
+
+    @Override
+    public void authenticateNativeBiometrics(
+      AppCompatActivity activity,
+      String username,
+      String challenge,
+      BiometricPromptTexts promptTexts,
+      Callback<Map<String, Object>> callback) {
+      delegate.authenticateNativeBiometrics(activity, username, challenge, promptTexts, onBridgeThread(callback));
+    }
+
+    @Override
+    public void approvalWebAuthn(
+      Activity activity,
+      String username,
+      Map<String, String> approvalData,
+      Callback<Map<String, Object>> callback) {
+      delegate.approvalWebAuthn(activity, username, approvalData, onBridgeThread(callback));
+    }
+
+    @Override
+    public void approvalWebAuthn(
+      Activity activity,
+      TSWebAuthnAuthenticationData authenticationData,
+      Callback<Map<String, Object>> callback) {
+      delegate.approvalWebAuthn(activity, authenticationData, onBridgeThread(callback));
+    }
+
+    @Override
+    public void approvalNativeBiometrics(
+      AppCompatActivity activity,
+      String username,
+      String challenge,
+      BiometricPromptTexts promptTexts,
+      Callback<Map<String, Object>> callback) {
+      delegate.approvalNativeBiometrics(activity, username, challenge, promptTexts, onBridgeThread(callback));
+    }
+
+    @Override
+    public void registerPinCode(String username, String pinCode, Callback<PinRegistration> callback) {
+      delegate.registerPinCode(username, pinCode, onBridgeThread(callback));
+    }
+
+    @Override
+    public void authenticatePinCode(String username, String pinCode, String challenge, Callback<Map<String, Object>> callback) {
+      delegate.authenticatePinCode(username, pinCode, challenge, onBridgeThread(callback));
+    }
+
+    @Override
+    public void getDeviceInfo(Activity activity, Callback<Map<String, Object>> callback) {
+      delegate.getDeviceInfo(activity, onBridgeThread(callback));
+    }
+  }
+
+  /**
+   * Answers every PIN registration twice, from two threads at once, as a misbehaving SDK might.
+   */
+  private static final class DuplicatingGateway implements TsAuthenticationGateway {
+
+    private final ExecutorService executor;
+
+    DuplicatingGateway(ExecutorService executor) {
+      this.executor = executor;
+    }
+
+    @Override
+    public void registerPinCode(String username, String pinCode, Callback<PinRegistration> callback) {
+      Map<String, Object> result = new LinkedHashMap<>();
+      result.put("publicKeyId", "key-" + username);
+      PinRegistration registration = new PinRegistration() {
+        @NonNull
+        @Override
+        public Map<String, Object> result() {
+          return result;
+        }
+
+        @Override
+        public void commit() {
+        }
+      };
+      CountDownLatch race = new CountDownLatch(1);
+      for (int i = 0; i < 2; i++) {
+        executor.execute(() -> {
+          try {
+            race.await();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+          callback.success(registration);
+        });
+      }
+      race.countDown();
+    }
+
+    @Override
+    public void initializeSDK(Context context) {
+    }
+
+    @Override
+    public void initialize(Context context, String clientId) {
+    }
+
+    @Override
+    public boolean isWebAuthnSupported() {
+      return false;
+    }
+
+    @Override
+    public void registerWebAuthn(Activity activity, String username, String displayName, Callback<Map<String, Object>> callback) {
+      callback.error("unsupported", "Not stubbed");
+    }
+
+    @Override
+    public void authenticateWebAuthn(Activity activity, String username, Callback<Map<String, Object>> callback) {
+      callback.error("unsupported", "Not stubbed");
+    }
+
+    @Override
+    public void signTransactionWebAuthn(Activity activity, String username, Callback<Map<String, Object>> callback) {
+      callback.error("unsupported", "Not stubbed");
+    }
+
+    @Override
+    public void registerNativeBiometrics(Activity activity, String username, Callback<Map<String, Object>> callback) {
+      callback.error("unsupported", "Not stubbed");
+    }
+
+    @Override
+    public void authenticateNativeBiometrics(
+      AppCompatActivity activity,
+      String username,
+      String challenge,
+      BiometricPromptTexts promptTexts,
+      Callback<Map<String, Object>> callback) {
+      callback.error("unsupported", "Not stubbed");
+    }
+
+    @Override
+    public void approvalWebAuthn(
+      Activity activity,
+      String username,
+      Map<String, String> approvalData,
+      Callback<Map<String, Object>> callback) {
+      callback.error("unsupported", "Not stubbed");
+    }
+
+    @Override
+    public void approvalWebAuthn(
+      Activity activity,
+      TSWebAuthnAuthenticationData authenticationData,
+      Callback<Map<String, Object>> callback) {
+      callback.error("unsupported", "Not stubbed");
+    }
+
+    @Override
+    public void approvalNativeBiometrics(
+      AppCompatActivity activity,
+      String username,
+      String challenge,
+      BiometricPromptTexts promptTexts,
+      Callback<Map<String, Object>> callback) {
+      callback.error("unsupported", "Not stubbed");
+    }
+
+    @Override
+    public void authenticatePinCode(String username, String pinCode, String challenge, Callback<Map<String, Object>> callback) {
+      callback.error("unsupported", "Not stubbed");
+    }
+
+    @Override
+    public void getDeviceInfo(Activity activity, Callback<Map<String, Object>> callback) {
+      callback.error("unsupported", "Not stubbed");
+    }
+  }
+}
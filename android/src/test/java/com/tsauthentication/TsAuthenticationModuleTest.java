@@ -0,0 +1,95 @@
+package com.tsauthentication;
+
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+import com.facebook.react.bridge.JavaOnlyMap;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReadableMap;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class TsAuthenticationModuleTest {
+
+  private TsAuthenticationEngine engine;
+  private TsAuthenticationModule module;
+
+  @Before
+  public void setUp() {
+    engine = mock(TsAuthenticationEngine.class);
+    module = new TsAuthenticationModule(mock(ReactApplicationContext.class), engine);
+  }
+
+  @Test
+  public void configureAppliesValidOptions() {
+    Promise promise = mock(Promise.class);
+
+    module.configure(JavaOnlyMap.of(
+      "challengeReplay", JavaOnlyMap.of("policy", "reject", "ttlSeconds", 60.0, "maxEntries", 8.0),
+      "preconnect", true,
+      "lazyPublicKeys", JavaOnlyMap.of("enabled", true, "maxEntries", 4.0),
+      "simulation", JavaOnlyMap.of(
+        "seed", 42.0,
+        "latency", JavaOnlyMap.of("distribution", "uniform", "minMs", 10.0, "meanMs", 20.0, "maxMs", 30.0),
+        "errorRates", JavaOnlyMap.of("networkError", 0.5, "userCanceled", 0.5))), promise);
+
+    verify(promise).resolve(true);
+    verify(engine).setChallengeReplayPolicy(TsAuthenticationEngine.ChallengeReplayPolicy.REJECT, 60_000, 8);
+    verify(engine).setPreconnectOnInitialize(true);
+    verify(engine).setLazyPublicKeys(true, 4);
+    verify(engine).enableSimulation(
+      eq(42L), eq(TsAuthenticationEngine.LatencyDistribution.UNIFORM), eq(10L), eq(20L), eq(30L), anyMap());
+  }
+
+  @Test
+  public void configureRejectsInvalidOptionsWithoutApplyingAny() {
+    ReadableMap validReplay = JavaOnlyMap.of("policy", "reject");
+
+    assertRejected("challengeReplay.policy", JavaOnlyMap.of("challengeReplay", JavaOnlyMap.of()));
+    assertRejected("challengeReplay.policy",
+      JavaOnlyMap.of("challengeReplay", JavaOnlyMap.of("policy", "sometimes")));
+    assertRejected("challengeReplay.ttlSeconds",
+      JavaOnlyMap.of("challengeReplay", JavaOnlyMap.of("policy", "reject", "ttlSeconds", -1.0)));
+    assertRejected("challengeReplay.ttlSeconds",
+      JavaOnlyMap.of("challengeReplay", JavaOnlyMap.of("policy", "reject", "ttlSeconds", "60")));
+    assertRejected("challengeReplay.maxEntries",
+      JavaOnlyMap.of("challengeReplay", JavaOnlyMap.of("policy", "reject", "maxEntries", 0.0)));
+    assertRejected("challengeReplay.maxEntries",
+      JavaOnlyMap.of("challengeReplay", JavaOnlyMap.of("policy", "reject", "maxEntries", 1.5)));
+    // A bad option after a valid one must not leave the valid one applied.
+    assertRejected("preconnect", JavaOnlyMap.of("challengeReplay", validReplay, "preconnect", "yes"));
+    assertRejected("lazyPublicKeys", JavaOnlyMap.of("lazyPublicKeys", true));
+    assertRejected("lazyPublicKeys.enabled", JavaOnlyMap.of("lazyPublicKeys", JavaOnlyMap.of("enabled", 1.0)));
+    assertRejected("lazyPublicKeys.maxEntries",
+      JavaOnlyMap.of("lazyPublicKeys", JavaOnlyMap.of("enabled", true, "maxEntries", 0.0)));
+    assertRejected("simulation", JavaOnlyMap.of("simulation", true));
+    assertRejected("simulation.latency.distribution",
+      JavaOnlyMap.of("simulation", JavaOnlyMap.of("latency", JavaOnlyMap.of("distribution", "normal"))));
+    assertRejected("simulation.latency.minMs",
+      JavaOnlyMap.of("simulation", JavaOnlyMap.of("latency", JavaOnlyMap.of("minMs", -5.0))));
+    assertRejected("simulation.latency.maxMs",
+      JavaOnlyMap.of("simulation", JavaOnlyMap.of("latency", JavaOnlyMap.of("minMs", 100.0, "maxMs", 50.0))));
+    assertRejected("simulation.errorRates.networkError",
+      JavaOnlyMap.of("simulation", JavaOnlyMap.of("errorRates", JavaOnlyMap.of("networkError", 1.5))));
+    assertRejected("simulation.errorRates.networkError",
+      JavaOnlyMap.of("simulation", JavaOnlyMap.of("errorRates", JavaOnlyMap.of("networkError", "often"))));
+    assertRejected("simulation.errorRates",
+      JavaOnlyMap.of("simulation", JavaOnlyMap.of("errorRates", JavaOnlyMap.of("a", 0.6, "b", 0.6))));
+
+    verifyNoInteractions(engine);
+  }
+
+  private void assertRejected(String option, ReadableMap options) {
+    Promise promise = mock(Promise.class);
+    module.configure(options, promise);
+    verify(promise).reject("result", "Invalid option: " + option);
+  }
+}
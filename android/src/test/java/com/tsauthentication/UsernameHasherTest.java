@@ -0,0 +1,46 @@
+package com.tsauthentication;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+
+@RunWith(RobolectricTestRunner.class)
+public class UsernameHasherTest {
+
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void saltIsKeptAcrossRestarts() throws Exception {
+    File directory = folder.newFolder();
+
+    long first = new UsernameHasher(directory).hash("alice@example.com");
+    long second = new UsernameHasher(directory).hash("alice@example.com");
+
+    assertEquals(first, second);
+  }
+
+  @Test
+  public void installsHashTheSameUsernameDifferently() throws Exception {
+    long first = new UsernameHasher(folder.newFolder()).hash("alice@example.com");
+    long second = new UsernameHasher(folder.newFolder()).hash("alice@example.com");
+
+    assertNotEquals(first, second);
+  }
+
+  @Test
+  public void hashDoesNotFollowStringHashCode() {
+    UsernameHasher hasher = new UsernameHasher(new byte[16]);
+
+    // "Aa" and "BB" share a String.hashCode.
+    assertNotEquals(hasher.hash("Aa"), hasher.hash("BB"));
+    assertEquals(0, hasher.hash(null));
+  }
+}
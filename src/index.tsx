@@ -29,7 +29,8 @@ export namespace TSAuthenticationSDK {
   }
 
   export interface TSBiometricsRegistrationResult {
-    publicKey: string;
+    /** Omitted when lazyPublicKeys is enabled; see getPublicKey. */
+    publicKey?: string;
     publicKeyId: string;
     os: string;
     keyType: string;
@@ -37,11 +38,20 @@ export namespace TSAuthenticationSDK {
 
   export interface TSPinCodeRegistrationCompletion {
     publicKeyId: string;
-    publicKey: string;
+    /** Omitted when lazyPublicKeys is enabled; see getPublicKey. */
+    publicKey?: string;
     keyType: string;
     contextIdentifier: string;
   }
 
+  export interface TSPinCodeRegistrationCommitCompletion {
+    publicKeyId: string;
+    /** Omitted when lazyPublicKeys is enabled; see getPublicKey. */
+    publicKey?: string;
+    keyType: string;
+    committed: boolean;
+  }
+
   export interface TSPinCodeAuthenticationCompletion {
     publicKeyId: string;
     signature: string;
@@ -55,7 +65,8 @@ export namespace TSAuthenticationSDK {
 
   export interface DeviceInfo {
     publicKeyId: string;
-    publicKey: string;
+    /** Omitted when lazyPublicKeys is enabled; see getPublicKey. */
+    publicKey?: string;
   }
 
   export const enum TSAuthenticationError {
@@ -71,6 +82,72 @@ export namespace TSAuthenticationSDK {
     unknown
   }
 
+  export interface FlightRecorderEntry {
+    sequence: number;
+    method: string;
+    usernameHash: string;
+    startTime: number;
+    endTime: number | null;
+    outcome: 'pending' | 'success' | 'failure';
+    errorCategory:
+      | 'none'
+      | 'sdk'
+      | 'invalidInput'
+      | 'unsupported'
+      | 'noActivity'
+      | 'contextNotFound'
+      | 'replayedChallenge'
+      | 'unsupportedActivity'
+      | 'userCanceled'
+      | 'network'
+      | 'server'
+      | 'notInitialized'
+      | 'userNotFound';
+  }
+
+  export interface ChallengeReplayOptions {
+    policy: 'off' | 'reject' | 'returnCached';
+    ttlSeconds?: number;
+    maxEntries?: number;
+  }
+
+  export interface SimulationOptions {
+    seed?: number;
+    latency?: {
+      distribution?: 'fixed' | 'uniform' | 'exponential';
+      minMs?: number;
+      meanMs?: number;
+      maxMs?: number;
+    };
+    errorRates?: { [errorType: string]: number };
+  }
+
+  export interface LazyPublicKeysOptions {
+    enabled?: boolean;
+    maxEntries?: number;
+  }
+
+  export interface ModuleOptions {
+    challengeReplay?: ChallengeReplayOptions;
+    preconnect?: boolean;
+    lazyPublicKeys?: LazyPublicKeysOptions;
+    simulation?: SimulationOptions | null;
+  }
+
+  export interface PreconnectReport {
+    host: string;
+    protocol: string;
+    dnsMs: number;
+    tcpMs: number;
+    tlsMs: number;
+    coldMs: number;
+    warmMs: number;
+    savedMs: number;
+    resumed: boolean;
+  }
+
+  export type AuthenticatorType = 'webauthn' | 'nativeBiometrics' | 'pinCode';
+
   export interface ApprovalResults {
     result: string;
   }
@@ -118,7 +195,15 @@ export namespace TSAuthenticationSDK {
 
 export interface TSAuthenticationSDKModule {
   initializeSDK: () => Promise<boolean>;
-  initialize: (clientId: string, domain?: string | null | undefined, baseUrl?: string | null | undefined) => Promise<boolean>;
+  initialize: (
+    clientId: string,
+    domain?: string | null | undefined,
+    baseUrl?: string | null | undefined,
+    options?: TSAuthenticationSDK.ModuleOptions | null | undefined
+  ) => Promise<boolean>;
+  configure: (options: TSAuthenticationSDK.ModuleOptions) => Promise<boolean>;
+  preconnect: (baseUrl?: string | null | undefined) => Promise<TSAuthenticationSDK.PreconnectReport | null>;
+  getPreconnectReport: () => Promise<TSAuthenticationSDK.PreconnectReport | null>;
   registerWebAuthn: (username: string, displayName: string) => Promise<TSAuthenticationSDK.TSRegistrationResult>;
   authenticateWebAuthn: (username: string) => Promise<TSAuthenticationSDK.TSAuthenticationResult>;
   signWebauthnTransaction: (username: string) => Promise<TSAuthenticationSDK.TSAuthenticationResult>;
@@ -142,10 +227,18 @@ export interface TSAuthenticationSDKModule {
 
   registerPinCode: (username: string, pinCode: string) => Promise<TSAuthenticationSDK.TSPinCodeRegistrationCompletion>;
   commitPinRegistration: (contextIdentifier: string) => Promise<void>;
+  registerPinCodeAndCommit: (
+    username: string,
+    pinCode: string,
+    serverVerified: boolean
+  ) => Promise<TSAuthenticationSDK.TSPinCodeRegistrationCommitCompletion>;
   authenticatePinCode(username: string, pinCode: string, challenge: string): Promise<TSAuthenticationSDK.TSPinCodeAuthenticationCompletion>;
   
   getDeviceInfo: () => Promise<TSAuthenticationSDK.DeviceInfo>;
   isWebAuthnSupported: () => Promise<boolean>;
+  getPublicKey: (publicKeyId: string) => Promise<string | null>;
+  dumpFlightRecorder: () => Promise<TSAuthenticationSDK.FlightRecorderEntry[]>;
+  recommendAuthenticator: (username: string) => Promise<TSAuthenticationSDK.AuthenticatorType | null>;
 }
 
 class AuthenticationSDK implements TSAuthenticationSDKModule {
@@ -154,12 +247,41 @@ class AuthenticationSDK implements TSAuthenticationSDKModule {
     return TsAuthentication.initializeSDK();
   }
 
-  initialize(clientId: string, domain?: string | null | undefined, baseUrl?: string | null | undefined): Promise<boolean> {
+  async initialize(
+    clientId: string,
+    domain?: string | null | undefined,
+    baseUrl?: string | null | undefined,
+    options?: TSAuthenticationSDK.ModuleOptions | null | undefined
+  ): Promise<boolean> {
     const isDomain = domain ? domain : "";
     const isBaseUrl = baseUrl ? baseUrl : "https://api.transmitsecurity.io/";
+    if (options) {
+      await this.configure(options);
+    }
     return TsAuthentication.initialize(clientId, isDomain, isBaseUrl);
   }
 
+  configure(options: TSAuthenticationSDK.ModuleOptions): Promise<boolean> {
+    if (Platform.OS !== 'android') {
+      return Promise.resolve(true);
+    }
+    return TsAuthentication.configure(options);
+  }
+
+  preconnect(baseUrl?: string | null | undefined): Promise<TSAuthenticationSDK.PreconnectReport | null> {
+    if (Platform.OS !== 'android') {
+      return Promise.resolve(null);
+    }
+    return TsAuthentication.preconnect(baseUrl ? baseUrl : "https://api.transmitsecurity.io/");
+  }
+
+  getPreconnectReport(): Promise<TSAuthenticationSDK.PreconnectReport | null> {
+    if (Platform.OS !== 'android') {
+      return Promise.resolve(null);
+    }
+    return TsAuthentication.getPreconnectReport();
+  }
+
   registerWebAuthn(username: string, displayName: string): Promise<TSAuthenticationSDK.TSRegistrationResult> {
     return TsAuthentication.registerWebAuthn(username, displayName);
   }
@@ -208,6 +330,23 @@ class AuthenticationSDK implements TSAuthenticationSDKModule {
     return TsAuthentication.commitPinRegistration(contextIdentifier);
   }
 
+  async registerPinCodeAndCommit(
+    username: string,
+    pinCode: string,
+    serverVerified: boolean
+  ): Promise<TSAuthenticationSDK.TSPinCodeRegistrationCommitCompletion> {
+    if (!serverVerified) {
+      throw new Error('PIN registration was not verified by the server');
+    }
+    if (Platform.OS === 'android') {
+      return TsAuthentication.registerPinCodeAndCommit(username, pinCode, serverVerified);
+    }
+
+    const { contextIdentifier, ...registration } = await this.registerPinCode(username, pinCode);
+    await this.commitPinRegistration(contextIdentifier);
+    return { ...registration, committed: true };
+  }
+
   authenticatePinCode(username: string, pinCode: string, challenge: string): Promise<TSAuthenticationSDK.TSPinCodeAuthenticationCompletion> {
     return TsAuthentication.authenticatePinCode(username, pinCode, challenge);
   }
@@ -219,5 +358,26 @@ class AuthenticationSDK implements TSAuthenticationSDKModule {
   isWebAuthnSupported(): Promise<boolean> {
     return TsAuthentication.isWebAuthnSupported();
   }
+
+  getPublicKey(publicKeyId: string): Promise<string | null> {
+    if (Platform.OS !== 'android') {
+      return Promise.resolve(null);
+    }
+    return TsAuthentication.getPublicKey(publicKeyId);
+  }
+
+  dumpFlightRecorder(): Promise<TSAuthenticationSDK.FlightRecorderEntry[]> {
+    if (Platform.OS !== 'android') {
+      return Promise.resolve([]);
+    }
+    return TsAuthentication.dumpFlightRecorder();
+  }
+
+  recommendAuthenticator(username: string): Promise<TSAuthenticationSDK.AuthenticatorType | null> {
+    if (Platform.OS !== 'android') {
+      return Promise.resolve(null);
+    }
+    return TsAuthentication.recommendAuthenticator(username);
+  }
 }
 export default new AuthenticationSDK();
\ No newline at end of file